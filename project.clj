@@ -4,7 +4,8 @@
   :license {:name "Apache License Version 2.0"
             :url  "http://www.apache.org/licenses/LICENSE-2.0"}
   :dependencies [[net.lfn3/undertaker "0.1.6-SNAPSHOT"]
-                 [junit "4.12"]]
+                 [junit "4.12"]
+                 [org.ow2.asm/asm "9.8"]]
 
   :plugins [[lein-junit "1.1.8"]]
 
@@ -12,13 +13,30 @@
   :test-paths ["src/test/java"]
   :junit ["src/test/java"]
   :java-source-paths ["src/main/java"]
+  :resource-paths ["src/main/resources"]
+  ;; The jar registers GenerateSourceProcessor, which mustn't run while it's being compiled itself.
+  :javac-options ["-proc:none"]
 
   :target-path "target/"
 
   :aot [net.lfn3.undertaker.junit.source-rule]
 
-  :profiles {:provided {:dependencies [[org.clojure/clojure "1.9.0"]]}
+  :manifest {"Premain-Class" "net.lfn3.undertaker.junit.coverage.CoverageAgent"
+             "Agent-Class"   "net.lfn3.undertaker.junit.coverage.CoverageAgent"}
+
+  :profiles {:provided {:dependencies [[org.clojure/clojure "1.9.0"]
+                                       [org.junit.jupiter/junit-jupiter-api "5.6.2"]]}
              :sources {:aot ^:replace []
                        :jar-name "undertaker-junit-sources-%s.jar"}
-             :test {:java-source-paths ["src/test/java"]}}
-  :aliases {"junit" ["do" ["clean"] ["compile"] ["with-profile" "test,provided" "junit"]]})
+             :test {:java-source-paths ["src/test/java"]
+                    :dependencies [[org.junit.jupiter/junit-jupiter-engine "5.6.2"]
+                                   [org.junit.platform/junit-platform-launcher "1.6.2"]]}
+             :bench {:dependencies [[org.openjdk.jmh/jmh-core "1.21"]
+                                    [org.openjdk.jmh/jmh-generator-annprocess "1.21"]]
+                     :java-source-paths ["src/bench/java"]
+                     :javac-options ^:replace ["-processor" "org.openjdk.jmh.generators.BenchmarkProcessor"]}}
+  :aliases {"junit" ["do" ["clean"] ["compile"] ["with-profile" "test,provided" "junit"]]
+            "merge-shards" ["run" "-m" "net.lfn3.undertaker.junit.shards"]
+            "bench" ["do" ["clean"] ["compile"] ["with-profile" "bench,provided" "run" "-m" "org.openjdk.jmh.Main"]]
+            "bench-baseline" ["do" ["clean"] ["compile"] ["with-profile" "bench,provided" "run" "-m" "org.openjdk.jmh.Main"
+                                                          "-prof" "gc" "-rf" "json" "-rff" "bench/baseline.json"]]})
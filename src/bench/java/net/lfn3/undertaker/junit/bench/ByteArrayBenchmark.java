@@ -0,0 +1,70 @@
+package net.lfn3.undertaker.junit.bench;
+
+import clojure.java.api.Clojure;
+import clojure.lang.IFn;
+import net.lfn3.undertaker.junit.InProcess;
+import net.lfn3.undertaker.junit.Seed;
+import net.lfn3.undertaker.junit.Source;
+import net.lfn3.undertaker.junit.SourceRule;
+import net.lfn3.undertaker.junit.Trials;
+import net.lfn3.undertaker.junit.sources.ByteSource;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares generating a 1 MiB byte[] in place against the way it used to be done,
+ * building a vector with vec-of and copying it with byte-array. Both draw the same bytes.
+ * Run with -prof gc to see the allocation rate of each.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ByteArrayBenchmark {
+    static final int TRIALS = 10;
+    static final int ONE_MIB = 1024 * 1024;
+
+    @Benchmark
+    @OperationsPerInvocation(TRIALS)
+    public Result nextByteArray() {
+        return Properties.run(OneMiBProperty.class, "byteArray");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIALS)
+    public Result vecOfBytes() {
+        return Properties.run(OneMiBProperty.class, "vecOfBytes");
+    }
+
+    @InProcess(true)
+    public static class OneMiBProperty {
+        private static final IFn VEC_OF = Clojure.var("net.lfn3.undertaker.core", "vec-of");
+        private static final IFn BYTE = Clojure.var("net.lfn3.undertaker.core", "byte");
+        private static final IFn BYTE_ARRAY = Clojure.var("clojure.core", "byte-array");
+
+        @Rule
+        public Source source = new SourceRule();
+
+        @Test
+        @Seed(1234567)
+        @Trials(TRIALS)
+        public void byteArray() {
+            final byte[] bytes = source.nextByteArray(ByteSource::nextByte, ONE_MIB);
+            Assert.assertEquals(ONE_MIB, bytes.length);
+        }
+
+        @Test
+        @Seed(1234567)
+        @Trials(TRIALS)
+        public void vecOfBytes() {
+            final byte[] bytes = (byte[]) BYTE_ARRAY.invoke(VEC_OF.invoke(BYTE, ONE_MIB, ONE_MIB));
+            Assert.assertEquals(ONE_MIB, bytes.length);
+        }
+    }
+}
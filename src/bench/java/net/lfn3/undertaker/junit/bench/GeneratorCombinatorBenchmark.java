@@ -0,0 +1,84 @@
+package net.lfn3.undertaker.junit.bench;
+
+import net.lfn3.undertaker.junit.Generator;
+import net.lfn3.undertaker.junit.InProcess;
+import net.lfn3.undertaker.junit.Seed;
+import net.lfn3.undertaker.junit.Source;
+import net.lfn3.undertaker.junit.SourceRule;
+import net.lfn3.undertaker.junit.Trials;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the same value through a chain of combinators, and through the equivalent hand nested calls to
+ * source.generate(...). The nested version opens four compound intervals per value, one per layer, where the
+ * combinator chain opens none beyond the ones inside nextInt.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GeneratorCombinatorBenchmark {
+    static final int TRIALS = 1000;
+
+    @Benchmark
+    @OperationsPerInvocation(TRIALS)
+    public Result nested() {
+        return Properties.run(NestedProperty.class, "trial");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIALS)
+    public Result combinators() {
+        return Properties.run(CombinatorProperty.class, "trial");
+    }
+
+    static final class Point {
+        final int x;
+        final int y;
+
+        Point(int x, int y) {
+            this.x = x;
+            this.y = y;
+        }
+    }
+
+    @InProcess(true)
+    public static class NestedProperty {
+        @Rule
+        public Source source = new SourceRule();
+
+        @Test
+        @Seed(1234567)
+        @Trials(TRIALS)
+        public void trial() {
+            source.generate(s -> {
+                final int x = s.generate(s2 -> s2.generate(s3 -> s3.nextInt(0, 1000)) * 2);
+                final int y = s.generate(s2 -> s2.nextInt(0, 1000));
+                return new Point(x, y);
+            });
+        }
+    }
+
+    @InProcess(true)
+    public static class CombinatorProperty {
+        private static final Generator<Point> POINTS = Generator.<Integer>asGenerator(s -> s.nextInt(0, 1000))
+                .map(x -> x * 2)
+                .zip(s -> s.nextInt(0, 1000), Point::new);
+
+        @Rule
+        public Source source = new SourceRule();
+
+        @Test
+        @Seed(1234567)
+        @Trials(TRIALS)
+        public void trial() {
+            POINTS.apply(source);
+        }
+    }
+}
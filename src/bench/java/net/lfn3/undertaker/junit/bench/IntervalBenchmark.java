@@ -0,0 +1,112 @@
+package net.lfn3.undertaker.junit.bench;
+
+import net.lfn3.undertaker.junit.Generator;
+import net.lfn3.undertaker.junit.InProcess;
+import net.lfn3.undertaker.junit.Seed;
+import net.lfn3.undertaker.junit.Source;
+import net.lfn3.undertaker.junit.SourceRule;
+import net.lfn3.undertaker.junit.Trials;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates the same 100 orders per trial with source.generate, generateLeaf and generateFlat. Each order is built
+ * from nested calls to generate and a primitive array, so with generate every one of them gets its own interval, with
+ * generateLeaf only the orders do, and with generateFlat nothing does. Run it with -prof gc to see the difference in
+ * what each trial allocates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class IntervalBenchmark {
+    static final int TRIALS = 100;
+    static final int ORDERS = 100;
+
+    @Benchmark
+    @OperationsPerInvocation(TRIALS)
+    public Result generate() {
+        return Properties.run(GenerateProperty.class, "trial");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIALS)
+    public Result generateLeaf() {
+        return Properties.run(LeafProperty.class, "trial");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIALS)
+    public Result generateFlat() {
+        return Properties.run(FlatProperty.class, "trial");
+    }
+
+    static final class Order {
+        final long id;
+        final int price;
+        final int quantity;
+        final long[] fills;
+
+        Order(long id, int price, int quantity, long[] fills) {
+            this.id = id;
+            this.price = price;
+            this.quantity = quantity;
+            this.fills = fills;
+        }
+    }
+
+    static final Generator<Order> ORDER = s -> new Order(s.generate(Source::nextLong),
+                                                         s.generate(s2 -> s2.nextInt(1, 10000)),
+                                                         s.generate(s2 -> s2.nextInt(1, 100)),
+                                                         s.nextLongArray(Source::nextLong, 0, 10));
+
+    @InProcess(true)
+    public static class GenerateProperty {
+        @Rule
+        public Source source = new SourceRule();
+
+        @Test
+        @Seed(1234567)
+        @Trials(TRIALS)
+        public void trial() {
+            for (int i = 0; i < ORDERS; i++) {
+                source.generate(ORDER);
+            }
+        }
+    }
+
+    @InProcess(true)
+    public static class LeafProperty {
+        @Rule
+        public Source source = new SourceRule();
+
+        @Test
+        @Seed(1234567)
+        @Trials(TRIALS)
+        public void trial() {
+            for (int i = 0; i < ORDERS; i++) {
+                source.generateLeaf(ORDER);
+            }
+        }
+    }
+
+    @InProcess(true)
+    public static class FlatProperty {
+        @Rule
+        public Source source = new SourceRule();
+
+        @Test
+        @Seed(1234567)
+        @Trials(TRIALS)
+        public void trial() {
+            for (int i = 0; i < ORDERS; i++) {
+                source.generateFlat(ORDER);
+            }
+        }
+    }
+}
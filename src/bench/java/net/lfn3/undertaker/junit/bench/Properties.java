@@ -0,0 +1,18 @@
+package net.lfn3.undertaker.junit.bench;
+
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.Result;
+
+final class Properties {
+    private Properties() {
+    }
+
+    static Result run(Class<?> testClass, String method) {
+        final Result result = new JUnitCore().run(Request.method(testClass, method));
+        if (!result.wasSuccessful()) {
+            throw new IllegalStateException(testClass.getName() + "." + method + " failed: " + result.getFailures());
+        }
+        return result;
+    }
+}
@@ -0,0 +1,85 @@
+package net.lfn3.undertaker.junit.bench;
+
+import net.lfn3.undertaker.junit.InProcess;
+import net.lfn3.undertaker.junit.Seed;
+import net.lfn3.undertaker.junit.Source;
+import net.lfn3.undertaker.junit.SourceRule;
+import net.lfn3.undertaker.junit.Trials;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the cost of reflectively generating a three level deep DTO, per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReflectiveBenchmark {
+    static final int TRIALS = 1000;
+
+    @Benchmark
+    @OperationsPerInvocation(TRIALS)
+    public Result nestedDto() {
+        return Properties.run(NestedDtoProperty.class, "trial");
+    }
+
+    @InProcess(true)
+    public static class NestedDtoProperty {
+        @Rule
+        public Source source = new SourceRule();
+
+        @Test
+        @Seed(1234567)
+        @Trials(TRIALS)
+        public void trial() {
+            Assert.assertNotNull(source.reflectively(Order.class));
+        }
+    }
+
+    public static class Instrument {
+        public final String symbol;
+        public final int tickSize;
+
+        public Instrument(String symbol, int tickSize) {
+            this.symbol = symbol;
+            this.tickSize = tickSize;
+        }
+    }
+
+    public static class Party {
+        public final long accountId;
+        public final String name;
+        public final boolean isMarketMaker;
+
+        public Party(long accountId, String name, boolean isMarketMaker) {
+            this.accountId = accountId;
+            this.name = name;
+            this.isMarketMaker = isMarketMaker;
+        }
+
+        public static Party anonymous(long accountId) {
+            return new Party(accountId, "", false);
+        }
+    }
+
+    public static class Order {
+        public final Instrument instrument;
+        public final Party party;
+        public final long price;
+        public final long quantity;
+
+        public Order(Instrument instrument, Party party, long price, long quantity) {
+            this.instrument = instrument;
+            this.party = party;
+            this.price = price;
+            this.quantity = quantity;
+        }
+    }
+}
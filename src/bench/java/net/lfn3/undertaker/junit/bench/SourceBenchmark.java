@@ -0,0 +1,154 @@
+package net.lfn3.undertaker.junit.bench;
+
+import net.lfn3.undertaker.junit.Generator;
+import net.lfn3.undertaker.junit.InProcess;
+import net.lfn3.undertaker.junit.Seed;
+import net.lfn3.undertaker.junit.Source;
+import net.lfn3.undertaker.junit.SourceRule;
+import net.lfn3.undertaker.junit.Trials;
+import net.lfn3.undertaker.junit.generators.CodePoints;
+import net.lfn3.undertaker.junit.sources.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One benchmark per family of Source methods. Each benchmark runs a property that makes a single call to that family
+ * per trial, in process, so the score is the cost of that call plus the per-trial overhead measured by
+ * {@link TrialOverheadBenchmark#inProcess()}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SourceBenchmark {
+    static final int TRIALS = 1000;
+
+    @Param({"nextBool", "nextByte", "nextShort", "nextInt", "nextLong", "nextFloat", "nextDouble", "nextRealDouble",
+            "nextChar", "nextString", "nextAsciiString",
+            "nextBooleanArray", "nextByteArray", "nextCharArray", "nextShortArray", "nextIntArray", "nextLongArray",
+            "nextFloatArray", "nextDoubleArray",
+            "nextList", "nextArray", "nextMap", "nextSet", "nextEnum", "from", "generate", "nullable"})
+    public String family;
+
+    //JUnit makes the instances of SourceFamilies, so JMH's Blackhole is handed to them through a static.
+    @Setup(Level.Trial)
+    public void setUp(Blackhole blackhole) {
+        SourceFamilies.blackhole = blackhole;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SourceFamilies.blackhole = null;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIALS)
+    public Result sourceFamily() {
+        return Properties.run(SourceFamilies.class, family);
+    }
+
+    public enum AnEnum {A, B, C, D, E}
+
+    @InProcess(true)
+    public static class SourceFamilies {
+        private static final List<Integer> COLLECTION = Arrays.asList(1, 2, 3, 4, 5);
+        private static final Generator<Long> GENERATOR = LongSource::nextLong;
+
+        @Rule
+        public Source source = new SourceRule();
+
+        static volatile Blackhole blackhole;
+
+        private final Blackhole bh = blackhole;
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextBool() { bh.consume(source.nextBool()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextByte() { bh.consume(source.nextByte()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextShort() { bh.consume(source.nextShort()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextInt() { bh.consume(source.nextInt()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextLong() { bh.consume(source.nextLong()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextFloat() { bh.consume(source.nextFloat()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextDouble() { bh.consume(source.nextDouble()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextRealDouble() { bh.consume(source.nextRealDouble()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextChar() { bh.consume(source.nextChar()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextString() { bh.consume(source.nextString()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextAsciiString() { bh.consume(source.nextString(CodePoints.ASCII)); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextBooleanArray() { bh.consume(source.nextBooleanArray()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextByteArray() { bh.consume(source.nextByteArray()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextCharArray() { bh.consume(source.nextCharArray()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextShortArray() { bh.consume(source.nextShortArray()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextIntArray() { bh.consume(source.nextIntArray()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextLongArray() { bh.consume(source.nextLongArray()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextFloatArray() { bh.consume(source.nextFloatArray()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextDoubleArray() { bh.consume(source.nextDoubleArray()); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextList() { bh.consume(source.nextList(GENERATOR)); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextArray() { bh.consume(source.nextArray(Long.class, GENERATOR)); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextMap() { bh.consume(source.nextMap(GENERATOR, GENERATOR)); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextSet() { bh.consume(source.nextSet(GENERATOR)); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nextEnum() { bh.consume(source.nextEnum(AnEnum.class)); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void from() { bh.consume(source.from(COLLECTION)); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void generate() { bh.consume(source.generate(GENERATOR)); }
+
+        @Test @Seed(1234567) @Trials(TRIALS)
+        public void nullable() { bh.consume(source.nullable(GENERATOR)); }
+    }
+}
@@ -0,0 +1,48 @@
+package net.lfn3.undertaker.junit.bench;
+
+import net.lfn3.undertaker.junit.InProcess;
+import net.lfn3.undertaker.junit.Seed;
+import net.lfn3.undertaker.junit.Source;
+import net.lfn3.undertaker.junit.SourceRule;
+import net.lfn3.undertaker.junit.Trials;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the time from loading SourceRule to the end of a first trial that calls nextInt, which includes loading the
+ * Clojure runtime, and the time to just construct a SourceRule, which shouldn't. Each fork is a fresh JVM that runs
+ * them once, the same as a test JVM forked by Surefire would.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+    @Benchmark
+    public Result firstTrial() {
+        return Properties.run(FirstTrialProperty.class, "trial");
+    }
+
+    @Benchmark
+    public Source constructRule() {
+        return new SourceRule();
+    }
+
+    @InProcess(true)
+    public static class FirstTrialProperty {
+        @Rule
+        public Source source = new SourceRule();
+
+        @Test
+        @Seed(1234567)
+        @Trials(1)
+        public void trial() {
+            source.nextInt();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package net.lfn3.undertaker.junit.bench;
+
+import net.lfn3.undertaker.junit.InProcess;
+import net.lfn3.undertaker.junit.Seed;
+import net.lfn3.undertaker.junit.Source;
+import net.lfn3.undertaker.junit.SourceRule;
+import net.lfn3.undertaker.junit.Trials;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.Result;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reports the cost of a single trial of a property that does almost nothing, so the score is the per-trial overhead
+ * of the rule when running trials through JUnitCore versus in process.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TrialOverheadBenchmark {
+    static final int TRIALS = 1000;
+
+    @Benchmark
+    @OperationsPerInvocation(TRIALS)
+    public Result junitCore() {
+        return Properties.run(JUnitCoreProperty.class, "trial");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIALS)
+    public Result inProcess() {
+        return Properties.run(InProcessProperty.class, "trial");
+    }
+
+    public static class JUnitCoreProperty {
+        @Rule
+        public Source source = new SourceRule();
+
+        @Test
+        @Seed(1234567)
+        @Trials(TRIALS)
+        public void trial() {
+            source.nextInt();
+        }
+    }
+
+    @InProcess(true)
+    public static class InProcessProperty {
+        @Rule
+        public Source source = new SourceRule();
+
+        @Test
+        @Seed(1234567)
+        @Trials(TRIALS)
+        public void trial() {
+            source.nextInt();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+(ns net.lfn3.undertaker.junit.shards
+  (:require [clojure.edn :as edn]
+            [clojure.java.io :as io]
+            [clojure.string :as str])
+  (:import (java.io File)
+           (net.lfn3.undertaker.junit Shards)))
+
+;; Each shard of a sharded run writes a map per test of :class, :method, :seed, :shard, :shards, :trials-run, and a
+;; :failure of :trial-index, :trial-seed and :message if any of its trials failed.
+(defn write-result ^File [^Shards shards class-name method-name result]
+  (let [file (.toFile (.resultFile shards class-name method-name))]
+    (io/make-parents file)
+    (spit file (pr-str result))
+    file))
+
+(defn read-results [directory]
+  (->> (file-seq (io/file directory))
+       (filter #(str/ends-with? (.getName ^File %) ".edn"))
+       (map #(edn/read-string (slurp %)))))
+
+;; When more than one shard failed, the failure on the earliest trial is the one that would have been found if the
+;; trials had all run on one machine.
+(defn merge-results [results]
+  (->> results
+       (group-by (juxt :class :method :seed :shards))
+       (map (fn [[[class method seed shard-count] shard-results]]
+              {:class      class
+               :method     method
+               :seed       seed
+               :shards     shard-count
+               :missing    (remove (set (map :shard shard-results)) (range shard-count))
+               :trials-run (reduce + (map :trials-run shard-results))
+               :failure    (->> shard-results
+                                (keep :failure)
+                                (sort-by :trial-index)
+                                (first))}))
+       (sort-by (juxt :class :method))))
+
+(defn format-merged [{:keys [class method seed shards missing trials-run failure]}]
+  (str (format "%s.%s ran %s trials with seed %s over %s shards" class method trials-run seed shards)
+       (when (seq missing)
+         (format ", but there were no results from shard %s" (str/join ", " missing)))
+       (if failure
+         (format ". It failed on trial %s, which has the seed %s.%s%s"
+                 (:trial-index failure) (:trial-seed failure) \newline (:message failure))
+         ". It passed.")))
+
+(defn -main [& [directory]]
+  (let [merged (merge-results (read-results (or directory
+                                                 (System/getProperty Shards/DIRECTORY_PROPERTY
+                                                                     Shards/DEFAULT_DIRECTORY))))]
+    (doseq [test merged]
+      (println (format-merged test))
+      (println))
+    (System/exit (if (some #(or (:failure %) (seq (:missing %))) merged) 1 0))))
@@ -1,6 +1,6 @@
 (ns net.lfn3.undertaker.junit.source-rule
   (:gen-class
-    :name net.lfn3.undertaker.junit.SourceRule
+    :name net.lfn3.undertaker.junit.ClojureSourceRule
     :state state
     :implements [net.lfn3.undertaker.junit.Source]
     :init init
@@ -9,35 +9,127 @@
                    [java.util.Map java.util.Map] []})
   (:import (org.junit.runners.model Statement)
            (org.junit.runner Description JUnitCore Request)
-           (java.util List Map Collection Set)
-           (java.util.function Function BiFunction)
-           (java.lang.reflect Modifier Method Parameter ParameterizedType Constructor Executable)
-           (net.lfn3.undertaker.junit Seed Trials)
-           (net.lfn3.undertaker.junit Generator Debug Source SourceRule GenericGenerator)
+           (java.util List Map Collection Set Arrays Collections WeakHashMap SplittableRandom Iterator NoSuchElementException Spliterator Spliterators)
+           (java.util.stream Stream StreamSupport)
+           (java.io File Writer StringWriter)
+           (clojure.lang IRecord)
+           (java.lang.management ManagementFactory)
+           (java.util.concurrent Callable ConcurrentHashMap Executors Future ThreadFactory)
+           (java.util.concurrent.atomic AtomicInteger AtomicLong)
+           (java.util.function Function BiFunction ToIntFunction ToLongFunction)
+           (java.lang.reflect AnnotatedElement Modifier Method ParameterizedType Constructor Type TypeVariable WildcardType GenericArrayType Array)
+           (net.lfn3.undertaker.junit Seed Trials InProcess InProcessTrialRunner Parallel TimeBudget SizeRamp CoverageGuided Maximize Maximize$Metric)
+           (net.lfn3.undertaker.junit ExampleDatabase ExampleDatabase$Example Listeners FailureReport Shards)
+           (net.lfn3.undertaker.junit CandidateCache CandidateCache$Candidate CandidateCache$Outcome)
+           (net.lfn3.undertaker.junit.instrumentation TestRecorder TrialRecorder GenerationHook)
+           (net.lfn3.undertaker.junit Generator Debug Source GenericGenerator GeneratorRegistry GeneratorProvider)
            (net.lfn3.undertaker.junit.generators IntGenerator CodePoints ShortGenerator)
+           (net.lfn3.undertaker.junit.reflection GenerationPlan Invoker)
+           (net.lfn3.undertaker.junit.primitive.collections IntHashSet LongHashSet)
+           (net.lfn3.undertaker.junit.coverage CoverageProbes Corpus Corpus$Input)
            (net.lfn3.undertaker.junit.primitive.functions ToBooleanFunction ToByteFunction ToCharFunction ToFloatFunction ToShortFunction))
   (:require [net.lfn3.undertaker.core :as undertaker]
             [net.lfn3.undertaker.source :as source]
+            [net.lfn3.undertaker.junit.shards :as shards]
             [clojure.string :as str]
+            [clojure.java.io :as io]
             [clojure.core :as core]))
 
+;; With @SizeRamp the default maximum sizes of collections, arrays and strings are scaled, starting small and growing
+;; over the run. Sizes passed in explicitly are left alone.
+(def ^:dynamic *size-scale* 1.0)
+
+;; Coverage guided and @Maximize runs bind this to a boolean[1], which is set if the trial used a default size, since
+;; only then does rerunning its seed at a different scale draw anything different.
+(def ^:dynamic *default-size-used* nil)
+
+(defn scaled-size [max-size]
+  (when-let [^booleans used *default-size-used*]
+    (aset used 0 true))
+  (if (== 1.0 *size-scale*)
+    max-size
+    (int (Math/ceil (* max-size *size-scale*)))))
+
+(defn default-max-size []
+  (scaled-size undertaker/default-collection-max-size))
+
+(defn default-string-max-size []
+  (scaled-size undertaker/default-string-max-size))
+
+;; Inside generateFlat and generateLeaf the Source doesn't open intervals of its own: not for calls to generate, nor
+;; for pushInterval and popInterval. What they draw belongs to the enclosing interval, so there's less to keep for each
+;; trial and to walk while shrinking, at the cost of fewer places for the shrinker to cut. Intervals made inside
+;; undertaker itself, like those around elements of lists, arrays and strings, are still made.
+;; *flat* holds how many pushIntervals inside the flat generator haven't been popped yet, so the pushes and pops it
+;; skips still have to balance within it, just as they would if they weren't skipped.
+(def ^:dynamic *flat* nil)
+(def ^:dynamic *trial-recorder* nil)
+
+(defn record-interval []
+  (when-let [^TrialRecorder recorder *trial-recorder*]
+    (.recordInterval recorder)))
+
+(defmacro with-interval [& body]
+  `(if *flat*
+     (do ~@body)
+     (do
+       (record-interval)
+       (undertaker/with-compound-interval ~@body))))
+
+;; Primitive arrays are filled in place, rather than being built as a vector and copied, so elements are never boxed.
+;; vec-of still decides how many elements there are, so the bytes drawn, and so seeds and shrinking, are the same as
+;; building a vector. It's a vector of nils though, and each element still gets an interval, so memory use still
+;; grows with the size of the array.
+(defn initial-capacity [lo hi]
+  (if (= lo hi)
+    hi
+    (min hi (max lo 16))))
+
+(defn grow-capacity [n hi]
+  (min hi (max 16 (* 2 n))))
+
+(defmacro fill-array [array-tag array-fn coerce-fn element-expr lo hi]
+  (let [array (with-meta (gensym "array") {:tag array-tag})]
+    `(let [lo# (int ~lo)
+           hi# (int ~hi)
+           holder# (volatile! (~array-fn (initial-capacity lo# hi#)))
+           filled# (int-array 1)]
+       (undertaker/vec-of (fn []
+                            (let [n# (aget filled# 0)
+                                  ~array (let [~array @holder#]
+                                           (if (= n# (alength ~array))
+                                             (vreset! holder# (Arrays/copyOf ~array (int (grow-capacity n# hi#))))
+                                             ~array))]
+                              (aset ~array n# (~coerce-fn ~element-expr))
+                              (aset filled# 0 (unchecked-inc-int n#))
+                              nil))
+                          lo# hi#)
+       (let [~array @holder#
+             n# (aget filled# 0)]
+         (if (= n# (alength ~array))
+           ~array
+           (Arrays/copyOf ~array n#))))))
+
 (defmacro get-array-fn [type-hint type-str specialize-from]
   (let [camelcased-type-str (str (str/upper-case (first type-str)) (apply str (rest type-str)))
         fn-name (symbol (str "-next" camelcased-type-str "Array"))
         array-fn-name (symbol (str type-str "-array"))
+        array-tag (symbol (str type-str "s"))
+        coerce-fn (symbol type-str)
         generator-name (symbol "undertaker" type-str)
         apply-fn (symbol (str "applyAs" camelcased-type-str))
         function-type-hint (if (= specialize-from :java)
                              (symbol (str "java.util.function.To" camelcased-type-str "Function"))
                              (symbol (str "net.lfn3.undertaker.junit.primitive.functions.To" camelcased-type-str "Function")))]
-    `(defn ^{:tag type-hint} ~fn-name
-       ([_#] (~array-fn-name (undertaker/vec-of ~generator-name)))
+    `(defn ^{:tag ~type-hint} ~fn-name
+       ([_#] (fill-array ~array-tag ~array-fn-name ~coerce-fn (~generator-name) 0 (default-max-size)))
        ([this# ^{:tag ~function-type-hint} generator#]
-         (~array-fn-name (undertaker/vec-of #(. generator# ~apply-fn this#))))
+         (fill-array ~array-tag ~array-fn-name ~coerce-fn (. generator# ~apply-fn this#)
+                     0 (default-max-size)))
        ([this# ^{:tag ~function-type-hint} generator# size#]
-         (~array-fn-name (undertaker/vec-of #(. generator# ~apply-fn this#) size# size#)))
+         (fill-array ~array-tag ~array-fn-name ~coerce-fn (. generator# ~apply-fn this#) size# size#))
        ([this# ^{:tag ~function-type-hint} generator# min# max#]
-         (~array-fn-name (undertaker/vec-of #(. generator# ~apply-fn this#) min# max#))))))
+         (fill-array ~array-tag ~array-fn-name ~coerce-fn (. generator# ~apply-fn this#) min# max#)))))
 
 (get-array-fn "[J" "long" :java)
 (get-array-fn "[B" "byte" :undertaker)
@@ -48,6 +140,67 @@
 (get-array-fn "[S" "short" :undertaker)
 (get-array-fn "[Z" "boolean" :undertaker)
 
+;; Distinct arrays can't use vec-of, since a repeated value can end the array early. So each element gets its own
+;; compound interval, and past the minimum size starts with a draw deciding if there's another element.
+;; A value we've already generated is redrawn, up to distinct-retries times. If we still don't have a new value the array
+;; ends there, unless it's not yet at its minimum size.
+(defn another-element? [lo hi n]
+  (cond
+    (< n lo) true
+    (<= hi n) false
+    :default (not (zero? (undertaker/int 0 (max 1 (quot (- hi lo) 2)))))))
+
+(def distinct-retries 100)
+
+(defmacro fill-distinct-array [array-tag array-fn set-class coerce-fn element-expr lo hi]
+  `(let [lo# (int ~lo)
+         hi# (int ~hi)
+         seen# (new ~set-class (initial-capacity lo# hi#))]
+     (with-interval
+       (loop [~(with-meta 'array {:tag array-tag}) (~array-fn (initial-capacity lo# hi#))
+              n# 0]
+         (let [~(with-meta 'array {:tag array-tag}) (if (and (= n# (alength ~'array)) (< n# hi#))
+                                                      (Arrays/copyOf ~'array (int (grow-capacity n# hi#)))
+                                                      ~'array)]
+           (if (with-interval
+                 (when (another-element? lo# hi# n#)
+                   (loop [attempt# 0]
+                     (let [element# (~coerce-fn ~element-expr)]
+                       (cond
+                         (.add seen# element#) (do (aset ~'array (int n#) element#)
+                                                   true)
+                         (< attempt# distinct-retries) (recur (inc attempt#))
+                         (< n# lo#) (throw (IllegalStateException.
+                                             (str "Couldn't generate " lo# " distinct values, only found " n#
+                                                  ". The generator might not have enough values to pick from.")))
+                         :default false)))))
+             (recur ~'array (inc n#))
+             (if (= n# (alength ~'array))
+               ~'array
+               (Arrays/copyOf ~'array (int n#)))))))))
+
+(defn ^ints -nextDistinctIntArray
+  ([_] (fill-distinct-array ints int-array IntHashSet int (undertaker/int) 0 (default-max-size)))
+  ([this generator] (-nextDistinctIntArray this generator 0 (default-max-size)))
+  ([this generator size] (-nextDistinctIntArray this generator size size))
+  ([this ^ToIntFunction generator min max]
+   (fill-distinct-array ints int-array IntHashSet int (.applyAsInt generator this) min max)))
+
+(defn ^ints -nextSortedDistinctIntArray
+  ([this generator] (-nextSortedDistinctIntArray this generator 0 (default-max-size)))
+  ([this generator min max] (doto (-nextDistinctIntArray this generator min max) (Arrays/sort))))
+
+(defn ^longs -nextDistinctLongArray
+  ([_] (fill-distinct-array longs long-array LongHashSet long (undertaker/long) 0 (default-max-size)))
+  ([this generator] (-nextDistinctLongArray this generator 0 (default-max-size)))
+  ([this generator size] (-nextDistinctLongArray this generator size size))
+  ([this ^ToLongFunction generator min max]
+   (fill-distinct-array longs long-array LongHashSet long (.applyAsLong generator this) min max)))
+
+(defn ^longs -nextSortedDistinctLongArray
+  ([this generator] (-nextSortedDistinctLongArray this generator 0 (default-max-size)))
+  ([this generator min max] (doto (-nextDistinctLongArray this generator min max) (Arrays/sort))))
+
 (defn wrap-fn-to-java-fn [f]
   (reify
     Function
@@ -71,49 +224,126 @@
    Boolean/TYPE   undertaker/boolean
    Boolean        undertaker/boolean})
 
+;; The generator tables are only built the first time a SourceRule needs them, which is when it's first asked to
+;; generate something by class. Tests that only ask for primitives never build them, and loading this namespace,
+;; which happens in every test JVM that touches SourceRule, doesn't pay for them.
 (def array-generators
-  {(Class/forName "[J") (partial -nextLongArray nil)
-   (Class/forName "[B") (partial -nextByteArray nil)
-   (Class/forName "[C") (partial -nextCharArray nil)
-   (Class/forName "[D") (partial -nextDoubleArray nil)
-   (Class/forName "[F") (partial -nextFloatArray nil)
-   (Class/forName "[I") (partial -nextIntArray nil)
-   (Class/forName "[S") (partial -nextShortArray nil)
-   (Class/forName "[Z") (partial -nextBooleanArray nil)})
+  (delay
+    {(Class/forName "[J") (partial -nextLongArray nil)
+     (Class/forName "[B") (partial -nextByteArray nil)
+     (Class/forName "[C") (partial -nextCharArray nil)
+     (Class/forName "[D") (partial -nextDoubleArray nil)
+     (Class/forName "[F") (partial -nextFloatArray nil)
+     (Class/forName "[I") (partial -nextIntArray nil)
+     (Class/forName "[S") (partial -nextShortArray nil)
+     (Class/forName "[Z") (partial -nextBooleanArray nil)}))
+
+(declare -nextString)
 
 (def java-types-generators
-  {String undertaker/string})
+  {String #(-nextString nil)})
+
+(def default-class->generator-map
+  (delay
+    (->> (merge primitive-generators java-types-generators @array-generators)
+         (map (fn [[class f]] [class (wrap-fn-to-java-fn f)]))
+         (into {}))))
+
+;; Types are resolved against an immutable map of TypeVariable -> resolved type, which is built fresh for each class
+;; we generate. A resolved type is either a Class, {::raw Class ::args [resolved types]} for a parameterized type,
+;; or {::component resolved type} for a generic array.
+(defn resolve-type [env ^Type t]
+  (cond
+    (instance? Class t) t
+    (instance? ParameterizedType t) {::raw  (.getRawType ^ParameterizedType t)
+                                     ::args (mapv (partial resolve-type env)
+                                                  (.getActualTypeArguments ^ParameterizedType t))}
+    (instance? TypeVariable t) (if (contains? env t)
+                                 (get env t)
+                                 (resolve-type (assoc env t Object) ;Stops T extends Comparable<T> from recurring
+                                               (first (.getBounds ^TypeVariable t))))
+    (instance? WildcardType t) (resolve-type env (first (.getUpperBounds ^WildcardType t)))
+    (instance? GenericArrayType t) {::component (resolve-type env (.getGenericComponentType ^GenericArrayType t))}
+    :default Object))
+
+(defn raw-class ^Class [resolved]
+  (cond
+    (class? resolved) resolved
+    (::raw resolved) (::raw resolved)
+    :default (class (Array/newInstance (raw-class (::component resolved)) 0))))
+
+(defn type-args [resolved]
+  (if (class? resolved)
+    (mapv (partial resolve-type {}) (.getTypeParameters ^Class resolved)) ;Raw use of a generic class
+    (::args resolved)))
+
+(defn component-type [resolved]
+  (if (class? resolved)
+    (.getComponentType ^Class resolved)
+    (::component resolved)))
 
-(def default-class->generator-map (->> (merge primitive-generators java-types-generators array-generators)
-                                       (map (fn [[class f]] [class (wrap-fn-to-java-fn f)]))
-                                       (into {})))
+(defn type-env [resolved]
+  (zipmap (.getTypeParameters (raw-class resolved)) (type-args resolved)))
+
+(defprotocol TypeArgsGenerator
+  (generate-with-type-args [this source type-args]))
+
+(extend-protocol TypeArgsGenerator
+  GenericGenerator
+  (generate-with-type-args [g source type-args]
+    (.apply ^GenericGenerator g source (into-array Class (map raw-class type-args)))))
+
+(declare generate-type)
+
+(defn type-args-generator [f]
+  (reify
+    TypeArgsGenerator
+    (generate-with-type-args [_ source type-args] (f source type-args))
+    GenericGenerator
+    (apply [_ source generic-classes] (f source (vec generic-classes)))))
+
+(defn type-generator [resolved]
+  (reify Generator
+    (apply [_ source] (generate-type source resolved))))
 
 (def default-class->generic-generators-map
-  {List (reify GenericGenerator                             ;Assumes there's only a single element in generic-classes
-          (apply [_ source generic-classes]
-            (.nextList ^Source source (reify Generator
-                                        (apply [_ source] (.reflectively source ^Class (first generic-classes)))))))
-   Map  (reify GenericGenerator
-          (apply [_ source generic-classes]
-            (.nextMap ^Source source
-                      (reify Generator
-                        (apply [_ source] (.reflectively source ^Class (first generic-classes))))
-                      (reify Generator
-                        (apply [_ source] (.reflectively source ^Class (nth generic-classes 1)))))))
-   Set  (reify GenericGenerator                             ;Assumes there's only a single element in generic-classes
-          (apply [_ source generic-classes]
-            (.nextSet ^Source source (reify Generator
-                                       (apply [_ source] (.reflectively source ^Class (first generic-classes)))))))})
+  (delay
+    {List (type-args-generator (fn [^Source source [element-type]]
+                                 (.nextList source (type-generator element-type))))
+     Map  (type-args-generator (fn [^Source source [key-type value-type]]
+                                 (.nextMap source (type-generator key-type) (type-generator value-type))))
+     Set  (type-args-generator (fn [^Source source [element-type]]
+                                 (.nextSet source (type-generator element-type))))}))
+
+;; Every instance of the test class constructs a new SourceRule, usually with the same map of generators, so the
+;; registry built from that map is kept around and shared between them.
+(def registries (Collections/synchronizedMap (WeakHashMap.)))
+
+(defn service-generators []
+  (->> (GeneratorRegistry/providers)
+       (map #(.generators ^GeneratorProvider %))
+       (reduce into {})))
+
+(defn registry-for ^GeneratorRegistry [class->generator-map]
+  (or (.get registries class->generator-map)
+      (let [registry (GeneratorRegistry. (merge @default-class->generator-map
+                                                (service-generators)
+                                                class->generator-map))]
+        (.put registries class->generator-map registry)
+        registry)))
 
 (defn -init
   ([] (-init {}))
   ([class->generator-map] (-init class->generator-map {}))
   ([class->generator-map generic-class->generator-map]
-   [[] {:class->generator         (merge default-class->generator-map class->generator-map)
-        :generic-class->generator (merge default-class->generic-generators-map generic-class->generator-map)
-        :generic-params-map       (atom {})}]))
+   [[] {:registry                 (delay (registry-for class->generator-map))
+        :generic-class->generator (delay (merge @default-class->generic-generators-map generic-class->generator-map))}]))
 
 (def ^:dynamic *nested* false)
+(def ^:dynamic *trial-index* nil)
+(def ^:dynamic *generation-hook* nil)
+(def ^:dynamic *measure-body* nil)
+(def ^:dynamic *target-score* nil)
 
 (defn add-tag-meta-if-applicable [symbol ^Class type]
   (if (and (.isPrimitive type)
@@ -149,12 +379,32 @@
     `(let [~d ~delegate]
        (proxy [~type] [] ~@body ~@grouped-methods))))
 
-(defn get-annotation-value [^Class annotation ^Description description default]
-  (let [annotation (or (.getAnnotation description annotation)
-                       (.getAnnotation (.getTestClass description) annotation))]
-    (or (some-> annotation
-                (.value))
-        default)))
+;; Annotations are looked up on the test method, then on its class. Tests run through JUnit 4 find them through their
+;; Description, and tests run through the Jupiter extension find them on the Method.
+(defn description-annotations [^Description description]
+  (fn [^Class annotation]
+    (or (.getAnnotation description annotation)
+        (.getAnnotation (.getTestClass description) annotation))))
+
+(defn method-annotations [^AnnotatedElement method ^Class test-class]
+  (fn [^Class annotation]
+    (or (.getAnnotation method annotation)
+        (.getAnnotation test-class annotation))))
+
+(defn get-annotation [^Class annotation annotations]
+  (annotations annotation))
+
+(defn get-annotation-value [^Class annotation annotations default]
+  (or (some-> (get-annotation annotation annotations)
+              (.value))
+      default))
+
+(defn get-thread-count [annotations]
+  (if-let [^Parallel parallel (get-annotation Parallel annotations)]
+    (if (pos? (.threads parallel))
+      (.threads parallel)
+      (.availableProcessors (Runtime/getRuntime)))
+    1))
 
 (defn java-seed-message [name {:keys [:net.lfn3.undertaker.core/seed]}]
   (format "To rerun this particular failing case you can add an annotation to the test:
@@ -170,38 +420,836 @@ public void %s() { ... }"
              (when-let [failure (first failures)]
                (throw (.getException failure)))))))
 
-(defn process-result [result test-name debug?]
-  (when (false? (get-in result [::undertaker/initial-results ::undertaker/result]))
-    (let [message (undertaker/format-results test-name result java-seed-message debug?)
+(defn make-in-process-run-test-fn [^InProcessTrialRunner runner]
+  (fn [] (with-bindings {#'*nested* true}
+           (.evaluate (.trialStatement runner)))))
+
+(defn make-trial-fn [^Description test-description]
+  (let [class (Class/forName (.getClassName test-description))
+        method-name (.getMethodName test-description)]
+    (if (get-annotation-value InProcess (description-annotations test-description) false)
+      (make-in-process-run-test-fn (InProcessTrialRunner. class method-name))
+      (make-run-test-fn (JUnitCore.) (Request/method class method-name)))))
+
+(defn make-test-recorder [annotations]
+  (when-let [^Listeners listeners (get-annotation Listeners annotations)]
+    (TestRecorder. (mapv (fn [^Class listener-class]
+                           (.newInstance (.getConstructor listener-class (make-array Class 0)) (object-array 0)))
+                         (.value listeners)))))
+
+;; Reruns that are only there to shrink a failure that's already been counted, like the rerun of the lowest failing
+;; trial after a parallel run, bind this so every call they make is counted as a shrink step.
+(def ^:dynamic *shrinking* false)
+
+;; Each trial-fn is used for one run-prop, or stops at its first failure, so once it has failed any further calls are
+;; undertaker shrinking that failure. That's tracked per trial-fn rather than per test, so trials still running on
+;; other threads when one fails aren't counted as shrink steps.
+(defn record-trials [trial-fn ^TestRecorder test-recorder]
+  (let [shrinking (volatile! false)]
+    (fn []
+      (let [recorder (TrialRecorder.)
+            started (System/nanoTime)
+            shrinking? (or *shrinking* @shrinking)
+            failed (volatile! true)]
+        (try
+          (with-bindings {#'*trial-recorder*  recorder
+                          #'*generation-hook* (GenerationHook/both *generation-hook* recorder)}
+            (trial-fn))
+          (vreset! failed false)
+          (finally
+            (when @failed
+              (vreset! shrinking true))
+            (.trialFinished test-recorder recorder (- (System/nanoTime) started) @failed shrinking?)))))))
+
+(defn failed? [result]
+  (false? (get-in result [::undertaker/initial-results ::undertaker/result])))
+
+;; Every trial gets its own seed, derived from the seed for the test and the trial's index, and the workers take trials
+;; in index order. A failure stops any trial with a higher index from starting, but only the failure with the lowest
+;; index is shrunk, so the shrunk result is the same no matter how many threads there are or which finished first.
+;; Shrinking reruns that trial on the calling thread, since undertaker's shrinker hands us one candidate at a time.
+;; If the rerun passes, the trial is flaky, and the failure from the first run is reported without shrinking it.
+(defn trial-seed [seed index]
+  (if (zero? index)
+    seed
+    (let [z (unchecked-add (long seed) (unchecked-multiply (long index) -7046029254386353131))
+          z (unchecked-multiply (bit-xor z (unsigned-bit-shift-right z 30)) -4658895280553007687)
+          z (unchecked-multiply (bit-xor z (unsigned-bit-shift-right z 27)) -7723592293110705685)]
+      (bit-xor z (unsigned-bit-shift-right z 31)))))
+
+(defn without-shrinking [trial-fn]
+  (let [failed (volatile! false)]
+    (fn []
+      (when-not @failed
+        (try
+          (trial-fn)
+          (catch Throwable t
+            (vreset! failed true)
+            (throw t)))))))
+
+(defn lower-failing-index! [^AtomicLong lowest-failure index]
+  (loop []
+    (let [current (.get lowest-failure)]
+      (when (and (< index current)
+                 (not (.compareAndSet lowest-failure current index)))
+        (recur)))))
+
+(defn run-trials-in-order [{:keys [seed iterations] :as opts}
+                           ^AtomicLong next-index ^AtomicLong lowest-failure ^Map failures trial-fn stop? index-of]
+  (loop [trials-run 0]
+    (let [position (.getAndIncrement next-index)
+          index (index-of position)]
+      (if (and (< position iterations)
+               (< index (.get lowest-failure))
+               (not (stop?)))
+        (let [result (with-bindings {#'*trial-index* index}
+                       (undertaker/run-prop (assoc opts :seed (trial-seed seed index) :iterations 1)
+                                            (without-shrinking trial-fn)))]
+          (when (failed? result)
+            (.put failures index result)
+            (lower-failing-index! lowest-failure index))
+          (recur (inc trials-run)))
+        trials-run))))
+
+(defn worker-thread-factory []
+  (let [counter (AtomicInteger.)]
+    (reify ThreadFactory
+      (newThread [_ runnable]
+        (doto (Thread. runnable (str "undertaker-worker-" (.getAndIncrement counter)))
+          (.setDaemon true))))))
+
+;; index-of maps the position of a trial in this run to its index, which is only different when the run is sharded.
+(defn run-prop-in-parallel [{:keys [seed] :as opts} threads make-trial-fn run-fn stop? index-of]
+  (let [next-index (AtomicLong.)
+        lowest-failure (AtomicLong. Long/MAX_VALUE)
+        failures (ConcurrentHashMap.)
+        executor (Executors/newFixedThreadPool threads (worker-thread-factory))
+        trials-run (try
+                     (->> (range threads)
+                          (mapv (fn [_]
+                                  (.submit executor
+                                           ^Callable #(run-trials-in-order opts
+                                                                           next-index
+                                                                           lowest-failure
+                                                                           failures
+                                                                           (make-trial-fn)
+                                                                           stop?
+                                                                           index-of))))
+                          (map #(.get ^Future %))
+                          (reduce +))
+                     (finally
+                       (.shutdownNow executor)))
+        failing-index (.get lowest-failure)]
+    (if (= Long/MAX_VALUE failing-index)
+      {::trials-run trials-run}
+      (let [rerun (with-bindings {#'*trial-index* failing-index
+                                  #'*shrinking*   true}
+                    (run-fn (assoc opts :seed (trial-seed seed failing-index) :iterations 1)
+                            (make-trial-fn)
+                            (constantly false)))]
+        (-> (if (failed? rerun)
+              rerun
+              (-> (.get failures failing-index)
+                  (dissoc ::undertaker/shrunk-results)
+                  (assoc ::flaky true)))
+            (assoc ::trials-run trials-run ::replay-iterations 1 ::trial-index failing-index))))))
+
+;; Runs one trial per call to run-prop, so we can check the deadline in between them.
+;; The seed reported for a failure is the one for that trial, so it reproduces with @Trials(1).
+(defn run-prop-within-budget [{:keys [seed iterations] :as opts} trial-fn stop?]
+  (loop [[trial-seed & more-seeds] (iterate undertaker/next-seed seed)
+         trials-run 0]
+    (if (and (< trials-run iterations)
+             (or (zero? trials-run) (not (stop?))))
+      (let [result (undertaker/run-prop (assoc opts :seed trial-seed :iterations 1) trial-fn)]
+        (if (failed? result)
+          (assoc result ::trials-run (inc trials-run) ::replay-iterations 1)
+          (recur more-seeds (inc trials-run))))
+      {::trials-run trials-run})))
+
+;; Once the shrink budget is used up every other candidate passes, so the shrinker settles on the smallest failure
+;; it has found so far.
+(defn limit-shrinking [trial-fn shrink-millis]
+  (let [shrink-deadline (atom nil)]
+    (fn []
+      (when-not (some-> @shrink-deadline (< (System/currentTimeMillis)))
+        (try
+          (trial-fn)
+          (catch Throwable t
+            (compare-and-set! shrink-deadline nil (+ (System/currentTimeMillis) shrink-millis))
+            (throw t)))))))
+
+;; Runs with a ramp go through run-prop-in-parallel, so every trial knows its index, and a failure keeps its scale
+;; while it's shrunk.
+;; Sizes are worked out as a percentage, and only divided by 100 when they're used. The percentage we print in a failure
+;; message is the exact double, so @SizeRamp(fromPercent = <it>, trials = 0) goes through the same division, and gets
+;; exactly the same scale back.
+(defn size-percent [^SizeRamp ramp index]
+  (let [from (.fromPercent ramp)
+        to (.toPercent ramp)
+        trials (.trials ramp)
+        progress (if (pos? trials)
+                   (min 1.0 (/ (double index) trials))
+                   0.0)]
+    (+ from (* (- to from) progress))))
+
+(defn percent->scale [percent]
+  (/ (double percent) 100.0))
+
+(defn ramp-sizes [trial-fn ^SizeRamp ramp]
+  (fn []
+    (with-bindings {#'*size-scale* (percent->scale (size-percent ramp *trial-index*))}
+      (trial-fn))))
+
+(defn size-ramp-message [percent]
+  (when (and percent (not (== 100.0 percent)))
+    (format "Default sizes were scaled to %s%% when this failed. To rerun at that size, use @SizeRamp(fromPercent = %s, trials = 0) along with the seed."
+            (double percent) (double percent))))
+
+(defn out-of-time-fn [^TimeBudget time-budget]
+  (if time-budget
+    (let [deadline (+ (System/currentTimeMillis) (.millis time-budget))]
+      #(<= deadline (System/currentTimeMillis)))
+    (constantly false)))
+
+(defn make-run-fn [^TimeBudget time-budget out-of-time?]
+  (if time-budget
+    (let [shrink-millis (.shrinkMillis time-budget)]
+      (fn [opts trial-fn stop?]
+        (run-prop-within-budget opts
+                                (if (pos? shrink-millis)
+                                  (limit-shrinking trial-fn shrink-millis)
+                                  trial-fn)
+                                #(or (stop?) (out-of-time?)))))
+    (fn [opts trial-fn _] (undertaker/run-prop opts trial-fn))))
+
+(defn trials-run-message [test-name result ^TimeBudget time-budget started]
+  (format "%s ran %s trials in %sms, with a time budget of %sms."
+          test-name (::trials-run result) (- (System/currentTimeMillis) started) (.millis time-budget)))
+
+;; Coverage guided runs alternate between a fresh trial and a variation on an input from the corpus, which holds the
+;; inputs that reached edges no input before them had. undertaker doesn't let us hand it a choice sequence to run, so
+;; an input is a seed and a size, as a percentage of the default, and a variation reruns its seed at a different size:
+;; the same draws, with collections and strings cut shorter or carried on further. That does nothing for an input that
+;; only used sizes it was given explicitly, so those are never varied. If no input can be, the trial gets a fresh seed.
+(def percent-mutations [0.25 0.5 0.75 1.5 2.0 4.0])
+
+(defn mutate-percent [^SplittableRandom random percent]
+  (-> (* percent (nth percent-mutations (.nextInt random (count percent-mutations))))
+      (max 1.0)
+      (min 400.0)))
+
+(defn run-input [opts trial-fn input-seed percent]
+  (let [used (boolean-array 1)
+        result (with-bindings {#'*size-scale*        (percent->scale percent)
+                               #'*default-size-used* used}
+                 (undertaker/run-prop (assoc opts :seed input-seed :iterations 1) trial-fn))]
+    [result (aget used 0)]))
+
+(defn run-coverage-guided [{:keys [seed iterations] :as opts} trial-fn ^CoverageGuided guided failed-percent out-of-time?]
+  (let [random (SplittableRandom. seed)
+        seen (boolean-array CoverageProbes/MAP_SIZE)
+        corpus (Corpus. (.maxCorpus guided))]
+    (CoverageProbes/startTracing)
+    (try
+      (loop [index 0
+             edges 0
+             growth []]
+        (if (and (< index iterations)
+                 (or (zero? index) (not (out-of-time?))))
+          (let [^Corpus$Input parent (when (odd? index)
+                                       (.pick corpus random))
+                [input-seed percent] (if parent
+                                       [(.seed parent) (mutate-percent random (.percent parent))]
+                                       [(trial-seed seed index) 100.0])
+                [result default-size-used] (run-input opts trial-fn input-seed percent)
+                new-edges (CoverageProbes/mergeNewEdges seen)
+                edges (+ edges new-edges)
+                growth (cond-> growth (pos? new-edges) (conj [(inc index) edges]))]
+            (if (failed? result)
+              (do
+                (when-not (== 100.0 percent)
+                  (reset! failed-percent percent))
+                (assoc result ::trials-run (inc index) ::replay-iterations 1
+                              ::coverage-growth growth ::corpus-size (.size corpus)))
+              (do
+                (when (pos? new-edges)
+                  (.add corpus input-seed percent default-size-used))
+                (recur (inc index) edges growth))))
+          {::trials-run      index
+           ::coverage-growth growth
+           ::corpus-size     (.size corpus)}))
+      (finally
+        (CoverageProbes/stopTracing)))))
+
+(defn trials-to-reach [growth fraction]
+  (let [target (* fraction (second (peek growth)))]
+    (some (fn [[trial edges]] (when (<= target edges) trial)) growth)))
+
+(defn coverage-message [test-name result]
+  (let [growth (::coverage-growth result)]
+    (if (empty? growth)
+      (format "%s didn't reach any instrumented code in %s trials." test-name (::trials-run result))
+      (format "%s covered %s edges in %s trials, keeping %s inputs. It reached 50%% of that by trial %s, 90%% by trial %s and all of it by trial %s."
+              test-name (second (peek growth)) (::trials-run result) (::corpus-size result)
+              (trials-to-reach growth 0.5) (trials-to-reach growth 0.9) (first (peek growth))))))
+
+;; Failing values can be huge, so they're printed with limits on how much of them gets printed. Only the values the
+;; test was handed are wrapped in Rendered, and nothing is rendered until undertaker prints them, so the limits count
+;; from each value rather than from undertaker's maps and vectors around it, and nothing past them is ever looked at.
+;; Primitive arrays are summarised, wherever they're nested, rather than printed as an opaque #object.
+(deftype Rendered [value opts])
+
+(defn over-budget? [^StringWriter w max-chars]
+  (and max-chars (<= max-chars (.length (.getBuffer w)))))
+
+(declare print-value)
+
+;; Follows print-sequential in clojure.core, stopping early if the value has already used up its characters.
+(defn print-elements [^String begin print-one ^String end xs {:keys [max-chars]} ^StringWriter w]
+  (binding [*print-level* (some-> *print-level* dec)]
+    (if (and *print-level* (neg? *print-level*))
+      (.write w "#")
+      (do
+        (.write w begin)
+        (loop [[x & more :as xs] (seq xs)
+               n 0]
+          (when xs
+            (if (or (and *print-length* (<= *print-length* n))
+                    (over-budget? w max-chars))
+              (.write w "...")
+              (do
+                (print-one x w)
+                (when more
+                  (.write w " "))
+                (recur more (inc n))))))
+        (.write w end)))))
+
+(defn print-array-summary [array {:keys [array-elements]} ^Writer w]
+  (let [length (Array/getLength array)
+        shown (min length array-elements)
+        component (.getComponentType (class array))
+        byte-array? (= Byte/TYPE component)]
+    (.write w (str (.getName component) "[" length "]{"))
+    (dotimes [i shown]
+      (when (pos? i)
+        (.write w " "))
+      (let [element (Array/get array i)]
+        (.write w (if byte-array? (format "%02x" element) (str element)))))
+    (when (< shown length)
+      (.write w (str " ... " (- length shown) " more")))
+    (.write w "}")))
+
+(defn print-value [x opts ^StringWriter w]
+  (cond
+    (nil? x) (.write w "nil")
+    (.isArray (class x)) (if (.isPrimitive (.getComponentType (class x)))
+                           (print-array-summary x opts w)
+                           (print-elements "[" #(print-value %1 opts %2) "]" x opts w))
+    (instance? IRecord x) (print-method x w)
+    (instance? Map x) (print-elements "{"
+                                      (fn [[k v] w]
+                                        (print-value k opts w)
+                                        (.write ^Writer w " ")
+                                        (print-value v opts w))
+                                      "}" x opts w)
+    (instance? Set x) (print-elements "#{" #(print-value %1 opts %2) "}" x opts w)
+    (seq? x) (print-elements "(" #(print-value %1 opts %2) ")" x opts w)
+    (instance? Collection x) (print-elements "[" #(print-value %1 opts %2) "]" x opts w)
+    :default (print-method x w)))
+
+(defmethod print-method Rendered [^Rendered rendered ^Writer w]
+  (let [{:keys [depth length max-chars] :as opts} (.opts rendered)
+        out (StringWriter.)]
+    (binding [*print-level* depth
+              *print-length* length]
+      (print-value (.value rendered) opts out))
+    (.write w (let [printed (str out)]
+                (if (and max-chars (< max-chars (count printed)))
+                  (str (subs printed 0 max-chars) " ... " (- (count printed) max-chars) " more characters")
+                  printed)))))
+
+(defn render-values [values opts]
+  (let [render #(->Rendered % opts)]
+    (if (vector? values)
+      (mapv render values)
+      (map render values))))
+
+(defn render-generated-values [result opts]
+  (reduce (fn [result results-key]
+            (if (contains? (get result results-key) ::undertaker/generated-values)
+              (update-in result [results-key ::undertaker/generated-values] render-values opts)
+              result))
+          result
+          [::undertaker/initial-results ::undertaker/shrunk-results]))
+
+;; With @Maximize trials are scored, and the run looks for the input that scores highest instead of one that fails.
+;; As with coverage guided runs, inputs are a seed and a size, since undertaker can't be handed a choice sequence
+;; to climb from. Every other trial replays the best input so far at a different size, and the rest use fresh seeds.
+;; If the best input didn't draw anything at its default size, resizing it wouldn't change it, so it gets a fresh seed.
+(defn measure-latency [score body-fn]
+  (let [started (System/nanoTime)]
+    (try
+      (body-fn)
+      (finally
+        (vreset! score (double (- (System/nanoTime) started)))))))
+
+(def thread-mx-bean (delay (ManagementFactory/getThreadMXBean)))
+
+(defn allocated-bytes ^long []
+  (.getThreadAllocatedBytes ^com.sun.management.ThreadMXBean @thread-mx-bean (.getId (Thread/currentThread))))
+
+(defn measure-allocation [score body-fn]
+  (let [before (allocated-bytes)]
+    (try
+      (body-fn)
+      (finally
+        (vreset! score (double (- (allocated-bytes) before)))))))
+
+(defn score-trial [trial-fn ^Maximize$Metric metric score]
+  (fn []
+    (vreset! score Double/NEGATIVE_INFINITY)
+    (with-bindings (condp = metric
+                     Maximize$Metric/LATENCY {#'*measure-body* (partial measure-latency score)}
+                     Maximize$Metric/ALLOCATED_BYTES {#'*measure-body* (partial measure-allocation score)}
+                     Maximize$Metric/TARGET {#'*target-score* score})
+      (trial-fn))))
+
+(defn run-maximize [{:keys [seed iterations] :as opts} trial-fn ^Maximize maximize failed-percent out-of-time?]
+  (let [random (SplittableRandom. seed)
+        score (volatile! nil)
+        scored-trial-fn (score-trial trial-fn (.metric maximize) score)]
+    (loop [index 0
+           best nil]
+      (if (and (< index iterations)
+               (or (zero? index) (not (out-of-time?))))
+        (let [[input-seed percent] (if (and (odd? index) (:default-size-used best))
+                                     [(:seed best) (mutate-percent random (:percent best))]
+                                     [(trial-seed seed index) 100.0])
+              [result default-size-used] (run-input opts scored-trial-fn input-seed percent)]
+          (if (failed? result)
+            (do
+              (when-not (== 100.0 percent)
+                (reset! failed-percent percent))
+              (assoc result ::trials-run (inc index) ::replay-iterations 1))
+            (recur (inc index)
+                   (if (or (nil? best) (< (:score best) @score))
+                     {:seed              input-seed
+                      :percent           percent
+                      :default-size-used default-size-used
+                      :score             @score
+                      :trial             (inc index)}
+                     best))))
+        {::trials-run index
+         ::best       best}))))
+
+;; The best input is shrunk by treating any input that scores at least as high as a failure. Latency is noisy, so if
+;; the best input doesn't reach its own score again it's left as it is. A candidate that throws for any other reason
+;; hasn't scored anything, so it doesn't count as reaching the score, and the shrinker moves on to the next one.
+(defn shrink-best [opts trial-fn ^Maximize maximize {:keys [seed percent] best-score :score}]
+  (let [score (volatile! nil)
+        scored-trial-fn (score-trial trial-fn (.metric maximize) score)
+        shrink-result (with-bindings {#'*size-scale* (percent->scale percent)
+                                      #'*shrinking*  true}
+                        (undertaker/run-prop (assoc opts :seed seed :iterations 1)
+                                             (fn []
+                                               (when (and (try
+                                                            (scored-trial-fn)
+                                                            true
+                                                            (catch Throwable _
+                                                              false))
+                                                          (<= best-score @score))
+                                                 (throw (ex-info "Reached the best score" {::score @score}))))))]
+    (when (failed? shrink-result)
+      (let [shrunk (or (::undertaker/shrunk-results shrink-result)
+                       (::undertaker/initial-results shrink-result))]
+        (when-let [shrunk-score (::score (ex-data (::undertaker/cause shrunk)))]
+          {:score  shrunk-score
+           :result (dissoc shrunk ::undertaker/cause)})))))
+
+(defn format-score [^Maximize maximize score]
+  (condp = (.metric maximize)
+    Maximize$Metric/LATENCY (format "%.3fms" (/ score 1e6))
+    Maximize$Metric/ALLOCATED_BYTES (format "%.0f bytes allocated" score)
+    Maximize$Metric/TARGET (str score)))
+
+(defn maximize-message [test-name ^Maximize maximize {:keys [::trials-run ::best]} shrunk report-opts]
+  (cond
+    (nil? best) (format "%s didn't run any trials to score." test-name)
+    (Double/isInfinite (:score best)) (format "%s never called source.target in %s trials." test-name trials-run)
+    :default (str (format "%s scored %s at worst, on trial %s of %s. To rerun it, use @Seed(%s)"
+                          test-name (format-score maximize (:score best)) (:trial best) trials-run (:seed best))
+                  (when-not (== 100.0 (:percent best))
+                    (format " with @SizeRamp(fromPercent = %s, trials = 0)" (double (:percent best))))
+                  "."
+                  \newline
+                  (if shrunk
+                    (binding [*print-length* (:length report-opts)]
+                      (format "The simplest input that scored at least as high scored %s:%s%s"
+                              (format-score maximize (:score shrunk)) \newline
+                              (pr-str (let [result (:result shrunk)]
+                                        (if (contains? result ::undertaker/generated-values)
+                                          (render-values (::undertaker/generated-values result) report-opts)
+                                          (->Rendered result report-opts))))))
+                    "It didn't score that high again when it was rerun, so it wasn't shrunk."))))
+
+;; Sharded runs go through run-prop-in-parallel even on one thread, so each shard finds the earliest failure in its
+;; share of the trials, and the shard result with the lowest failing index is the failure a single machine would find.
+(defn get-seed [annotations ^Shards shards]
+  (or (get-annotation-value Seed annotations nil)
+      (some-> (System/getProperty Shards/SEED_PROPERTY) (Long/parseLong))
+      (when shards
+        (throw (IllegalStateException. (str "Every shard needs to use the same seed. Set it with @Seed, or the "
+                                            Shards/SEED_PROPERTY " system property."))))
+      (undertaker/next-seed (System/nanoTime))))
+
+(defn shard-message [^Shards shards seed result]
+  (when-let [index (::trial-index result)]
+    (format "This was trial %s of the run with seed %s, on shard %s of %s. To rerun just this trial use @Seed(%s) with @Trials(1), or rerun every trial on one machine with -D%s=%s."
+            index seed (.index shards) (.count shards) (::undertaker/seed result) Shards/SEED_PROPERTY seed)))
+
+(defn shard-result [^Shards shards class-name method-name seed result message]
+  {:class      class-name
+   :method     method-name
+   :seed       seed
+   :shard      (.index shards)
+   :shards     (.count shards)
+   :trials-run (::trials-run result)
+   :failure    (when (failed? result)
+                 {:trial-index (::trial-index result)
+                  :trial-seed  (::undertaker/seed result)
+                  :message     (message)})})
+
+;; Failures are saved to the example database, along with the scale they failed at, and replayed at that scale before
+;; any new trials are run. Any that have stopped failing are removed.
+(defn replay-examples [^ExampleDatabase examples class-name method-name opts make-trial-fn]
+  (when examples
+    (some (fn [^ExampleDatabase$Example example]
+            (let [result (with-bindings {#'*size-scale* (.scale example)}
+                           (undertaker/run-prop (assoc opts :seed (.seed example) :iterations (.trials example))
+                                                (make-trial-fn)))]
+              (if (failed? result)
+                result
+                (.remove examples class-name method-name (.seed example)))))
+          (.examples examples class-name method-name))))
+
+(defn save-example [^ExampleDatabase examples class-name method-name result scale]
+  (when examples
+    (.save examples class-name method-name
+           (::undertaker/seed result)
+           (::replay-iterations result)
+           (double (or scale 1.0)))))
+
+;; Runs that don't give each trial its own seed report the seed for the whole run, so a failure is replayed by running
+;; as many trials as it took to find it.
+(defn count-trials-to-failure [trial-fn trials-run]
+  (let [failed (volatile! false)]
+    (fn []
+      (when-not @failed
+        (vswap! trials-run inc))
+      (try
+        (trial-fn)
+        (catch Throwable t
+          (vreset! failed true)
+          (throw t))))))
+
+(defn get-report-opts [annotations]
+  (if-let [^FailureReport report (get-annotation FailureReport annotations)]
+    {:depth             (.depth report)
+     :length            (.length report)
+     :array-elements    (.arrayElements report)
+     :max-chars         (.maxChars report)
+     :write-full-report (.writeFullReport report)}
+    {:depth             FailureReport/DEFAULT_DEPTH
+     :length            FailureReport/DEFAULT_LENGTH
+     :array-elements    FailureReport/DEFAULT_ARRAY_ELEMENTS
+     :max-chars         FailureReport/DEFAULT_MAX_CHARS
+     :write-full-report false}))
+
+(defn truncate [^String message max-chars]
+  (if (< max-chars (count message))
+    (str (subs message 0 max-chars) \newline "... " (- (count message) max-chars) " more characters")
+    message))
+
+(defn render-results [result test-name debug? {:keys [depth length max-chars] :as report-opts}]
+  (binding [*print-level* depth
+            *print-length* length]
+    (-> (undertaker/format-results test-name (render-generated-values result report-opts) java-seed-message debug?)
+        (truncate max-chars))))
+
+(defn write-full-report ^File [result test-name debug? class-name method-name]
+  (let [file (io/file (System/getProperty FailureReport/DIRECTORY_PROPERTY FailureReport/DEFAULT_DIRECTORY)
+                      (str class-name "." method-name ".undertaker.txt"))]
+    (io/make-parents file)
+    (spit file (binding [*print-level* nil
+                         *print-length* nil]
+                 (undertaker/format-results test-name
+                                            (render-generated-values result {:array-elements Integer/MAX_VALUE})
+                                            java-seed-message
+                                            debug?)))
+    file))
+
+;; The message is only rendered if something asks for it.
+(defn process-result [result test-name debug? report-opts & preambles]
+  (when (failed? result)
+    (let [message (delay (->> (render-results result test-name debug? report-opts)
+                              (conj (vec (remove nil? preambles)))
+                              (str/join (str \newline \newline))))
           cause (or (get-in result [::undertaker/shrunk-results ::undertaker/cause])
                     (get-in result [::undertaker/initial-results ::undertaker/cause]))]
       (throw (override-delegate
                Throwable
                cause
-               (getMessage [] message))))))
+               (getMessage [] @message))))))
+
+;; While a test with listeners, or one that's shrinking, is running, every call into the Source goes through
+;; record-generation, which hands it to the GenerationHook. The wrappers are put in place when the first such test
+;; starts and taken out when the last one finishes, so other tests only pay for a check of *generation-hook* if they
+;; run alongside one.
+(defmacro recording-generation [f & args]
+  `(if-let [^GenerationHook hook# *generation-hook*]
+     (let [_# (.enterGeneration hook#)
+           generated# (try
+                        (~f ~@args)
+                        (catch Throwable t#
+                          (.generationFailed hook#)
+                          (throw t#)))]
+       (.exitGeneration hook# generated#)
+       generated#)
+     (~f ~@args)))
+
+(defn record-generation [f]
+  (fn
+    ([a] (recording-generation f a))
+    ([a b] (recording-generation f a b))
+    ([a b c] (recording-generation f a b c))
+    ([a b c d] (recording-generation f a b c d))
+    ([a b c d e] (recording-generation f a b c d e))
+    ([a b c d e & more] (recording-generation apply f a b c d e more))))
+
+(def generation-fns (delay (into {}
+                                 (keep (fn [[sym v]]
+                                         (when (re-matches #"-(next|generate|reflectively|from|nullable).*" (name sym))
+                                           [v @v])))
+                                 (ns-interns 'net.lfn3.undertaker.junit.source-rule))))
+
+(def hooked-tests (AtomicInteger.))
+
+(defn hook-generation! []
+  (locking hooked-tests
+    (when (= 1 (.incrementAndGet hooked-tests))
+      (doseq [[v original] @generation-fns]
+        (alter-var-root v (constantly (record-generation original)))))))
+
+(defn unhook-generation! []
+  (locking hooked-tests
+    (when (zero? (.decrementAndGet hooked-tests))
+      (doseq [[v original] @generation-fns]
+        (alter-var-root v (constantly original))))))
+
+(defn with-generation-hooks [f]
+  (hook-generation!)
+  (try
+    (f)
+    (finally
+      (unhook-generation!))))
+
+;; Shrink passes often come up with a candidate that's already been run. Once a candidate has been handed exactly the
+;; values one we remember was, the rest of it would go the same way, so it's stopped and given the same outcome.
+;; Seeing those values needs the generation hooks, which are put in place when the test starts shrinking, and taken
+;; out by run-property once it's finished.
+(defn memoize-candidates [trial-fn ^CandidateCache cache]
+  (let [shrinking (volatile! false)]
+    (fn []
+      (if-not @shrinking
+        (try
+          (trial-fn)
+          (catch Throwable t
+            (vreset! shrinking true)
+            (when (.startShrinking cache)
+              (hook-generation!))
+            (throw t)))
+        (let [^CandidateCache$Candidate candidate (.candidate cache)
+              failure (try
+                        (with-bindings {#'*generation-hook* (GenerationHook/both candidate *generation-hook*)}
+                          (trial-fn))
+                        nil
+                        (catch Throwable t t))]
+          (.finished candidate failure)
+          (if-let [^CandidateCache$Outcome outcome (.repeated candidate)]
+            (some-> (.failure outcome) throw)
+            (some-> failure throw)))))))
+
+(defn candidate-cache-message [^CandidateCache cache]
+  (let [candidates (.candidates cache)
+        repeats (.repeats cache)]
+    (when (pos? candidates)
+      (format (str "Shrinking ran %s candidates, %s of which repeated one that had already run and were cut short "
+                   "(a %.1f%% hit rate).")
+              candidates repeats (* 100.0 (/ repeats candidates))))))
+
+;; A test is described by a map of :annotations, :test-name, :class-name, :method-name and :trial-fn-factory, which
+;; returns a fn that runs a single trial. Each fn it returns may be used on a different thread.
+(defn description->test [^Description test-description]
+  {:annotations      (description-annotations test-description)
+   :test-name        (first (str/split (.getDisplayName test-description) #"\("))
+   :class-name       (.getClassName test-description)
+   :method-name      (.getMethodName test-description)
+   :trial-fn-factory #(make-trial-fn test-description)})
+
+;; Clojure's *out* holds on to the System.out there was when it loaded, so messages go straight to System.out, where
+;; test runners that swap it out to capture a test's output will find them.
+(defn print-message [^String message]
+  (.println System/out message))
+
+(defn run-test [{:keys [annotations test-name class-name method-name trial-fn-factory]} test-recorder candidate-cache]
+  (let [started (System/currentTimeMillis)
+        ^TimeBudget time-budget (get-annotation TimeBudget annotations)
+        ^Shards shards (Shards/fromSystemProperties)
+        seed (get-seed annotations shards)
+        trials (if time-budget
+                 (.maxTrials time-budget)
+                 (get-annotation-value Trials annotations 1000))
+        debug? (get-annotation-value Debug annotations false)
+        parallel (get-annotation Parallel annotations)
+        threads (get-thread-count annotations)
+        opts {:seed       seed
+              :iterations trials
+              :debug      debug?}
+        examples (ExampleDatabase/fromSystemProperties)
+        ^CoverageGuided guided (get-annotation CoverageGuided annotations)
+        _ (when (and guided (not (CoverageProbes/isInstalled)))
+            (print-message (str test-name " is @CoverageGuided, but the coverage agent isn't installed, so it's running as usual. "
+                                "Add -javaagent:<path to undertaker-junit.jar>=<packages to instrument> to the test JVM's arguments.")))
+        guided (when (CoverageProbes/isInstalled) guided)
+        ^Maximize maximize (get-annotation Maximize annotations)
+        _ (when (and shards (or maximize (get-annotation CoverageGuided annotations)))
+            (throw (IllegalStateException. (str test-name " can't be sharded, since @Maximize and @CoverageGuided runs "
+                                                "build on their own earlier trials. Run it without the "
+                                                Shards/COUNT_PROPERTY " system property."))))
+        ^SizeRamp ramp (when-not (or guided maximize)
+                         (get-annotation SizeRamp annotations))
+        failed-percent (atom nil)
+        base-trial-fn #(cond-> (trial-fn-factory)
+                         candidate-cache (memoize-candidates candidate-cache)
+                         test-recorder (record-trials test-recorder))
+        new-trial-fn #(cond-> (base-trial-fn)
+                        ramp (ramp-sizes ramp))
+        replayed (replay-examples examples class-name method-name opts base-trial-fn)
+        out-of-time? (out-of-time-fn time-budget)
+        run-fn (make-run-fn time-budget out-of-time?)
+        result (cond
+                 replayed replayed
+                 maximize (run-maximize opts (new-trial-fn) maximize failed-percent out-of-time?)
+                 guided (run-coverage-guided opts (new-trial-fn) guided failed-percent out-of-time?)
+                 shards (run-prop-in-parallel (assoc opts :iterations (.trials shards trials))
+                                              threads new-trial-fn run-fn out-of-time? #(.trialIndex shards %))
+                 (or parallel ramp) (run-prop-in-parallel opts threads new-trial-fn run-fn out-of-time? identity)
+                 :default (let [trials-run (volatile! 0)
+                                result (run-fn opts (count-trials-to-failure (new-trial-fn) trials-run) (constantly false))]
+                            (cond-> result
+                              (and (failed? result) (not (::replay-iterations result))) (assoc ::replay-iterations @trials-run))))
+        failing-percent (if ramp
+                          (some->> (::trial-index result) (size-percent ramp))
+                          @failed-percent)
+        budget-message (when (and time-budget (not replayed))
+                         (trials-run-message test-name result time-budget started))
+        coverage-message (when (and guided (not replayed))
+                           (coverage-message test-name result))
+        report-opts (get-report-opts annotations)
+        maximize-message (when (and maximize (not (failed? result)))
+                           (maximize-message test-name maximize result
+                                             (when-let [best (::best result)]
+                                               (when-not (Double/isInfinite (:score best))
+                                                 (shrink-best opts (new-trial-fn) maximize best)))
+                                             report-opts))
+        full-report (when (and (failed? result) (:write-full-report report-opts))
+                      (write-full-report result test-name debug? class-name method-name))
+        shard-message (when (and shards (not replayed))
+                        (shard-message shards seed result))]
+    (when shards
+      (shards/write-result shards class-name method-name
+                           (shard-result shards class-name method-name seed result
+                                         #(render-results result test-name debug? report-opts))))
+    (when (and (failed? result) (not replayed))
+      (save-example examples class-name method-name result (some-> failing-percent percent->scale)))
+    (when-not (failed? result)
+      (some-> budget-message print-message)
+      (some-> coverage-message print-message)
+      (some-> maximize-message print-message))
+    (when test-recorder
+      (.testFinished test-recorder test-name))
+    (process-result result test-name debug? report-opts
+                    (when replayed "This failure was replayed from the example database.")
+                    (when (::flaky result) (str "This trial passed when it was rerun to shrink it, so the test may be "
+                                                "flaky. This is the failure from its first run, without shrinking."))
+                    (when full-report (str "The full report was written to " (.getPath full-report)))
+                    shard-message
+                    budget-message
+                    coverage-message
+                    (when-not replayed (size-ramp-message failing-percent))
+                    (when (and debug? candidate-cache) (candidate-cache-message candidate-cache)))))
+
+;; @Maximize shrinks by score rather than by failure, and a candidate that's cut short never gets a score, so those
+;; tests don't get a candidate cache.
+(defn run-property [{:keys [annotations] :as test}]
+  (let [test-recorder (make-test-recorder annotations)
+        ^CandidateCache candidate-cache (when-not (get-annotation Maximize annotations)
+                                          (CandidateCache.))]
+    (try
+      (if test-recorder
+        (with-generation-hooks #(run-test test test-recorder candidate-cache))
+        (run-test test nil candidate-cache))
+      (finally
+        (when (and candidate-cache (.hasStartedShrinking candidate-cache))
+          (unhook-generation!))))))
+
+(defn run-body [body-fn]
+  (let [body-fn (if-let [measure *measure-body*]
+                  #(measure body-fn)
+                  body-fn)]
+    (if-let [^TrialRecorder recorder *trial-recorder*]
+      (let [started (System/nanoTime)]
+        (try
+          (body-fn)
+          (finally
+            (.recordBody recorder (- (System/nanoTime) started)))))
+      (body-fn))))
 
 (defn ^Statement -apply [_ ^Statement base ^Description test-description]
   (proxy [Statement] []
     (evaluate []
       (if (not *nested*)                                    ;Check we're not already inside this rule
-        (let [seed (get-annotation-value Seed test-description (undertaker/next-seed (System/nanoTime)))
-              trials (get-annotation-value Trials test-description 1000)
-              debug? (get-annotation-value Debug test-description false)
-              junit (JUnitCore.)
-              class (Class/forName (.getClassName test-description))
-              test-request (Request/method class (.getMethodName test-description))
-              result (undertaker/run-prop {:seed       seed
-                                           :iterations trials
-                                           :debug      debug?}
-                                          (make-run-test-fn junit test-request))]
-          (process-result result (first (str/split (.getDisplayName test-description) #"\(")) debug?))
-        (.evaluate base)))))
+        (run-property (description->test test-description))
+        (run-body #(.evaluate base))))))
+
+;; Used by the Jupiter extension, which calls the test method itself for each trial, on whichever thread Jupiter is
+;; running the test on, rather than going back through the engine. Nothing here is shared between tests, so any
+;; number of them can run at once.
+(defn run-jupiter-property [^Method method ^Class test-class ^Callable trial]
+  (run-property {:annotations      (method-annotations method test-class)
+                 :test-name        (.getName method)
+                 :class-name       (.getName test-class)
+                 :method-name      (.getName method)
+                 :trial-fn-factory (constantly #(run-body (fn [] (.call trial))))}))
 
 (defn -pushInterval [_]
-  (source/push-interval undertaker/*source*))
+  (if-let [unpopped *flat*]
+    (vswap! unpopped inc)
+    (do
+      (record-interval)
+      (source/push-interval undertaker/*source*))))
 
 (defn -popInterval [_ generated-value]
-  (source/pop-interval undertaker/*source* generated-value))
+  (if-let [unpopped *flat*]
+    (if (pos? @unpopped)
+      (vswap! unpopped dec)
+      (throw (IllegalStateException. (str "popInterval was called inside generateFlat or generateLeaf without a "
+                                          "matching pushInterval inside it"))))
+    (source/pop-interval undertaker/*source* generated-value)))
+
+(defn -target [_ score]
+  (some-> *target-score* (vswap! max score)))
 
 (defn ^byte -nextByte
   ([this] (-nextByte this Byte/MIN_VALUE Byte/MAX_VALUE))
@@ -228,22 +1276,38 @@ public void %s() { ... }"
 (defn ^boolean -nextBool
   ([_] (undertaker/boolean)))
 
+;; The predefined code points are contiguous ranges, so we can make the same draws they would without going through
+;; the ShortGenerator and the Source.
+(defn code-point-fn [this ^ShortGenerator code-points]
+  (condp identical? code-points
+    CodePoints/ANY #(undertaker/short Short/MIN_VALUE Short/MAX_VALUE)
+    CodePoints/ASCII #(undertaker/short 32 126)
+    CodePoints/ALPHANUMERIC #(undertaker/short 48 57 65 90 97 122)
+    CodePoints/ALPHA #(undertaker/short 65 90 97 122)
+    CodePoints/DIGITS #(undertaker/short 48 57)
+    #(.applyAsShort code-points this)))
+
 (defn ^char -nextChar
   ([_] (undertaker/char))
   ([this code-point-gen]
+   (record-interval)
    (undertaker/with-leaf-interval
-     (core/unchecked-char (.applyAsShort code-point-gen this)))))
+     (core/unchecked-char ((code-point-fn this code-point-gen))))))
 
 (defn ^String -nextString
-  ([this] (-nextString this CodePoints/ANY 0 undertaker/default-string-max-size))
-  ([this ^ShortGenerator intGen] (-nextString this intGen 0 undertaker/default-string-max-size))
+  ([this] (-nextString this CodePoints/ANY 0 (default-string-max-size)))
+  ([this ^ShortGenerator intGen] (-nextString this intGen 0 (default-string-max-size)))
   ([this ^ShortGenerator intGen size] (-nextString this intGen size size))
   ([this ^ShortGenerator intGen min max]
-   (undertaker/with-compound-interval
-     (->> (undertaker/vec-of #(.applyAsShort intGen this) min max)
-          (map unchecked-char)
-          (char-array)
-          (String.)))))
+   ;; vec-of still decides the length, so a seed gives the same string it always has. The chars go straight into the
+   ;; builder though, so the vector is only nils.
+   (let [next-code-point (code-point-fn this intGen)
+         builder (StringBuilder. (int (initial-capacity min max)))]
+     (with-interval
+       (undertaker/vec-of #(do (.append builder (core/unchecked-char (next-code-point)))
+                               nil)
+                          min max)
+       (.toString builder)))))
 
 (defn ^float -nextFloat
   ([this] (-nextFloat this (- Float/MAX_VALUE) Float/MAX_VALUE))
@@ -261,12 +1325,44 @@ public void %s() { ... }"
   ([_ min max] (undertaker/real-double min max)))
 
 (defn ^List -nextList
-  ([this ^Function generator] (-nextList this generator 0 64))
+  ([this ^Function generator] (-nextList this generator 0 (scaled-size 64)))
   ([this ^Function generator size] (-nextList this generator size size))
   ([this ^Function generator min max] (undertaker/vec-of #(.apply generator this) min max)))
 
+;; Streams don't get an interval around the whole sequence, since the test could draw other values in between its
+;; elements. Instead each element is generated, along with the draw deciding if there is one, in its own compound
+;; interval as soon as the stream is asked if there's another. So shrinking can still remove elements or end the stream
+;; early. The bytes and intervals for every element are kept until the trial ends, so only the elements themselves are
+;; spared from being held in memory.
+(defn element-iterator [this ^Function generator min max]
+  (let [n (volatile! 0)
+        next-element (volatile! ::unknown)]
+    (reify Iterator
+      (hasNext [_]
+        (when (identical? ::unknown @next-element)
+          (vreset! next-element (with-interval
+                                  (if (another-element? min max @n)
+                                    (.apply generator this)
+                                    ::done))))
+        (not (identical? ::done @next-element)))
+      (next [iterator]
+        (if (.hasNext iterator)
+          (let [element @next-element]
+            (vreset! next-element ::unknown)
+            (vswap! n inc)
+            element)
+          (throw (NoSuchElementException.)))))))
+
+(defn ^Stream -nextStream
+  ([this ^Function generator] (-nextStream this generator 0 (scaled-size 64)))
+  ([this ^Function generator size] (-nextStream this generator size size))
+  ([this ^Function generator min max]
+   (StreamSupport/stream (Spliterators/spliteratorUnknownSize ^Iterator (element-iterator this generator min max)
+                                                              Spliterator/ORDERED)
+                         false)))
+
 (defn ^Map -nextMap
-  ([this ^Function keyGen valGen] (-nextMap this keyGen valGen 0 undertaker/default-collection-max-size))
+  ([this ^Function keyGen valGen] (-nextMap this keyGen valGen 0 (default-max-size)))
   ([this ^Function keyGen valGen size] (-nextMap this keyGen valGen size size))
   ([this ^Function keyGen valGen minSize maxSize]
    (if (instance? BiFunction valGen)
@@ -274,156 +1370,135 @@ public void %s() { ... }"
      (undertaker/map-of #(.apply keyGen this) #(.apply valGen this) minSize maxSize))))
 
 (defn ^Set -nextSet
-  ([this ^Function generator] (-nextSet this generator 0 undertaker/default-collection-max-size))
+  ([this ^Function generator] (-nextSet this generator 0 (default-max-size)))
   ([this ^Function generator size] (-nextSet this generator size size))
   ([this ^Function generator minSize maxSize] (undertaker/set-of #(.apply generator this) minSize maxSize)))
 
 (defn -nextArray
-  ([this ^Class c ^Function generator] (-nextArray this c generator 0 64))
+  ([this ^Class c ^Function generator] (-nextArray this c generator 0 (scaled-size 64)))
   ([this ^Class c ^Function generator size] (-nextArray this c generator size size))
   ([this ^Class c ^Function generator min max] (into-array c (undertaker/vec-of #(.apply generator this) min max))))
 
 (defn -nextEnum
-  ([_ ^Class c] (undertaker/elements (.getEnumConstants c))))
+  ([_ ^Class c] (undertaker/elements (GeneratorRegistry/enumConstants c))))
 
 (defn -from
   ([_ ^Collection c] (undertaker/elements c)))
 
 (defn -generate
-  ([this ^Generator g] (undertaker/with-compound-interval   ;TODO: Not sure about this
+  ([this ^Generator g] (with-interval                       ;TODO: Not sure about this
                          (.apply g this))))
 
+(defn generator-for ^Function [this ^Class c]
+  (let [{:keys [registry]} (.state this)]
+    (or (.lookup ^GeneratorRegistry @registry c)
+        (throw (ex-info (str "Could not find generator for " (.getName c) " in Source's class->generator map") {})))))
+
 (defn -generate-Class
   ([this ^Class c]
-   (let [{:keys [class->generator]} (.state this)]
-     (if-let [^Generator g (get class->generator c)]
-       (undertaker/with-compound-interval                   ;TODO: or this
-         (.apply g this))
-       (throw (ex-info (str "Could not find generator for " (.getName c) " in Source's class->generator map") {}))))))
+   (let [g (generator-for this c)]
+     (with-interval                                         ;TODO: or this
+       (.apply g this)))))
+
+(defn generate-flat [this ^Generator g]
+  (let [unpopped (volatile! 0)
+        generated (binding [*flat* unpopped]
+                    (.apply g this))]
+    (when-not (zero? @unpopped)
+      (throw (IllegalStateException. (str @unpopped " pushInterval call(s) inside generateFlat or generateLeaf "
+                                          "weren't matched by a popInterval inside it"))))
+    generated))
+
+(defn -generateFlat
+  ([this ^Generator g] (generate-flat this g)))
+
+(defn -generateLeaf
+  ([this ^Generator g] (with-interval
+                         (generate-flat this g))))
+
+(defn -generateLeaf-Class
+  ([this ^Class c]
+   (let [g (generator-for this c)]
+     (with-interval
+       (generate-flat this g)))))
 
 (defn -nullable
   ([this ^Generator g] (undertaker/frequency [[20 #(.apply g this)
                                                1 (constantly nil)]])))
 
-(defn is-interface-we-cannot-generate [this ^Class c]
-  (let [{:keys [generic-class->generator class->generator]} (.state this)]
-    (and (.isInterface c)
-         (not (get generic-class->generator c))
-         (not (get class->generator c)))))
-
-(defn has-params-we-can-generate [this ^Class c ^Executable exec]
-  (->> exec
-       (.getParameters)
-       (map #(.getType %1))
-       (not-any? #(or (is-interface-we-cannot-generate this %1)
-                      (= c %1)))))
-
-(defn get-static-constructors [this ^Class c]
-  (->> c
-       (.getMethods)
-       (filter #(-> (.getModifiers %1)
-                    (Modifier/isStatic)))
-       (filter #(-> (.getReturnType %1)
-                    (= c)))
-       (filter (partial has-params-we-can-generate this c))))
-
-(defn get-constructors-we-can-use [this ^Class c]
-  (->> c
-       (.getConstructors)
-       (filter (partial has-params-we-can-generate this c))))
-
-(defn get-type-params [^Parameter param] (.getTypeParameters (.getType param)))
-
-(defn get-generic-types [^Parameter param]
-  (let [^ParameterizedType maybe-parameterized (.getParameterizedType param)]
-    (when (instance? ParameterizedType maybe-parameterized)
-      (.getActualTypeArguments maybe-parameterized))))
-
-(defn map-types-to-generics [^Parameter param]
-  (zipmap (get-type-params param) (get-generic-types param)))
-
-(defn build-generic-types-map [^Executable c already-known]
-  (let [params (.getParameters c)
-        param-type-params (mapcat map-types-to-generics params)]
-    (merge already-known param-type-params)))
-
-(defn generate-array-reflectively [this array-class-string]
-  (let [class (Class/forName array-class-string)]
-    (-nextArray this class #(.reflectively this class %1))))
-
-(defn recursively-get [m k]
-  (if (contains? m k)
-    (loop [v (get m k)]
-      (let [n (get m v ::no-val)]
-        (if (= ::no-val n)
-          v
-          (recur n))))
-    nil))
-
-(defn resolve-type-params [^SourceRule this type-params]
-  (if (empty? type-params)
-    {}
-    (let [{:keys [generic-params-map]} (.state this)]
-      (->> type-params
-           (map (partial recursively-get @generic-params-map))
-           (filter (complement nil?))))))
-
-(defn generate-from-class [this class]
-  (let [{:keys [class->generator generic-class->generator]} (.state this)
-        ^Function generator (get class->generator class)
-        ^BiFunction generic-generator (get generic-class->generator class)
-        type-params (.getTypeParameters class)
-        resolved-type-params (resolve-type-params this type-params)
-        enough-resolved-type-params? (= (count type-params) (count resolved-type-params))]
+(defn get-candidates-we-can-use [this ^Class c]
+  (let [{:keys [generic-class->generator registry]} (.state this)]
+    (.usableCandidates (GenerationPlan/forClass c) @registry @generic-class->generator)))
+
+;; A generator registered for a subclass, i.e. ArrayList, would otherwise be used for every List<Foo>,
+;; ignoring Foo, so generic generators go before the registry's superclass and interface lookup.
+(defn generate-from-class [this resolved]
+  (let [{:keys [registry generic-class->generator]} (.state this)
+        ^GeneratorRegistry registry @registry
+        class (raw-class resolved)
+        ^Function exact (.lookupExact registry class)
+        ^Function generator (.lookup registry class)
+        generic-generator (get @generic-class->generator class)
+        args (type-args resolved)]
     (cond
+      exact (.apply exact this)
+      (and generic-generator (seq args)) (generate-with-type-args generic-generator this args)
       generator (.apply generator this)
-      (and generic-generator
-           enough-resolved-type-params?) (.apply generic-generator this resolved-type-params)
-      (str/starts-with? (.getName class) "[L") (->> class
-                                                    (.getName)
-                                                    (drop 2)
-                                                    (apply str)
-                                                    (generate-array-reflectively this))
+      (.isArray class) (-nextArray this (raw-class (component-type resolved)) (type-generator (component-type resolved)))
       (.isEnum class) (-nextEnum this class)
 
       :default ::not-genned)))
 
-(def -reflectively-Class)
-
-(defn get-parameter-types [this ^Executable x]
-  (->> x
-       (.getParameters)
-       (map #(.getType %1))
-       (map #(-reflectively-Class this %1))
+(defn get-parameter-types [this ^Invoker invoker env]
+  (->> invoker
+       (.genericParameterTypes)
+       (map #(generate-type this (resolve-type env %1)))
        (into-array Object)))
 
+;; Static factories usually have their own type variables, i.e. <T> Optional<T> of(T value),
+;; so we bind those from the return type rather than the class's type variables.
+(defn factory-env [^Invoker invoker resolved]
+  (let [return-type (.getGenericReturnType ^Method (.executable invoker))]
+    (if (instance? ParameterizedType return-type)
+      (->> (map vector (.getActualTypeArguments ^ParameterizedType return-type) (type-args resolved))
+           (filter (fn [[type-param _]] (instance? TypeVariable type-param)))
+           (into {}))
+      {})))
+
+(defn invoke-constructor [this ^Invoker invoker env]
+  (.invoke invoker nil (get-parameter-types this invoker env)))
+
+(defn invoke-method [this ^Invoker invoker instance env]
+  (.invoke invoker instance (get-parameter-types this invoker env)))
+
+(defn generate-type [this resolved]
+  (let [generated (generate-from-class this resolved)]
+    (if-not (= ::not-genned generated)
+      generated
+      (let [c (raw-class resolved)
+            ^Invoker chosen (undertaker/elements (get-candidates-we-can-use this c))] ;Might be a static constructor
+        (when (nil? chosen)
+          (throw (IllegalArgumentException.
+                   (str "Class " c " did not have any accessible constructors with parameters we could reflectively "
+                        "generate that were not " c "." \newline
+                        "If " c " is not a concrete class, consider passing a concrete class, or providing a "
+                        "default generator to use for " c " in the generator map when constructing this Source."))))
+        (if (.isConstructor chosen)
+          (invoke-constructor this chosen (type-env resolved))
+          (invoke-method this chosen nil (factory-env chosen resolved)))))))
+
 (defn -reflectively-Constructor
   ([this ^Constructor c]
-   (let [{:keys [generic-params-map]} (.state this)]
-     (swap! generic-params-map (partial build-generic-types-map c)))
-   (.newInstance c (get-parameter-types this c))))
+   (invoke-constructor this (GenerationPlan/invokerFor c) {})))
 
 (defn -reflectively-Method-Object
   ([this ^Method m instance]
-   (.invoke m instance (get-parameter-types this m))))
+   (invoke-method this (GenerationPlan/invokerFor m) instance {})))
 
 (defn -reflectively-Method
   ([this ^Method m]
-   (-reflectively-Method-Object this m (-reflectively-Class this (.getDeclaringClass m)))))
+   (-reflectively-Method-Object this m (generate-type this (.getDeclaringClass m)))))
 
 (defn -reflectively-Class
   ([this ^Class c]
-   (let [generated (generate-from-class this c)]
-     (if-not (= ::not-genned generated)
-       generated
-       (let [constructors (concat (get-constructors-we-can-use this c) (get-static-constructors this c))
-             chosen (undertaker/elements constructors)]     ;Might be a static constructor
-         (when (nil? chosen)
-           (throw (IllegalArgumentException.
-                    (str "Class " c " did not have any accessible constructors with parameters we could reflectively "
-                         "generate that were not " c "." \newline
-                         "If " c " is not a concrete class, consider passing a concrete class, or providing a "
-                         "default generator to use for " c " in the generator map when constructing this Source."))))
-         (if (instance? Constructor chosen)
-           (-reflectively-Constructor this chosen)
-           (-reflectively-Method-Object this chosen nil)))))))
+   (generate-type this c)))
@@ -0,0 +1,319 @@
+package net.lfn3.undertaker.junit;
+
+import net.lfn3.undertaker.junit.instrumentation.GenerationHook;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Outcomes of shrink candidates we've already run, so a candidate that repeats one can be cut short and given its
+ * outcome.
+ * <p>
+ * undertaker doesn't expose the bytes a trial drew, so a candidate is known by the values the Source handed to the
+ * test instead: a 64 bit hash of them, and how many there were. The test only sees those values, so once a candidate
+ * has been handed exactly the values a remembered candidate was, and that candidate asked for nothing more, this one
+ * would go the same way. That only works for values we can compare: primitives and their boxes, strings, enums, arrays,
+ * and collections, maps and optionals of those. Once a candidate is handed anything else, like an object a generator
+ * built, it's neither cut short nor remembered.
+ * <p>
+ * Only the most recently used entries are kept, so a long shrink doesn't hold on to every candidate. We also keep track
+ * of how many values each of the remembered candidates was handed, so most calls can tell they're not a repeat without
+ * a lookup.
+ */
+public final class CandidateCache {
+    public static final int DEFAULT_MAX_ENTRIES = 4096;
+
+    private static final long SEED = 0xcbf29ce484222325L;
+    private static final long NULL = 0x5bd1e9955bd1e995L;
+
+    private final int maxEntries;
+    private final Map<Integer, Integer> lengths = new HashMap<>();
+    private final LinkedHashMap<Key, Outcome> outcomes;
+    private final AtomicBoolean shrinking = new AtomicBoolean();
+    private long candidates;
+    private long repeats;
+
+    public CandidateCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public CandidateCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.outcomes = new LinkedHashMap<Key, Outcome>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Outcome> eldest) {
+                if (size() > CandidateCache.this.maxEntries) {
+                    forgetLength(eldest.getKey().length);
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * True the first time it's called, so whoever starts shrinking first can set up what the candidates need.
+     */
+    public boolean startShrinking() {
+        return shrinking.compareAndSet(false, true);
+    }
+
+    public boolean hasStartedShrinking() {
+        return shrinking.get();
+    }
+
+    public Candidate candidate() {
+        return new Candidate();
+    }
+
+    public synchronized long candidates() {
+        return candidates;
+    }
+
+    public synchronized long repeats() {
+        return repeats;
+    }
+
+    private synchronized Outcome lookup(long hash, int length) {
+        return lengths.containsKey(length) ? outcomes.get(new Key(hash, length)) : null;
+    }
+
+    private synchronized void finished(Key key, Throwable failure, boolean repeat) {
+        candidates++;
+        if (repeat) {
+            repeats++;
+        } else if (key != null && outcomes.put(key, new Outcome(failure)) == null) {
+            lengths.merge(key.length, 1, Integer::sum);
+        }
+    }
+
+    private void forgetLength(int length) {
+        lengths.computeIfPresent(length, (l, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Hooked into a single shrink candidate as it runs. Values are added to the hash as each outermost call into the
+     * Source returns, and it's checked against the remembered candidates then.
+     */
+    public final class Candidate implements GenerationHook {
+        private int depth;
+        private long hash = SEED;
+        private int length;
+        private boolean incomparable;
+        private Outcome repeated;
+
+        @Override
+        public void enterGeneration() {
+            depth++;
+        }
+
+        @Override
+        public void exitGeneration(Object generated) {
+            if (--depth != 0 || incomparable || repeated != null) {
+                return;
+            }
+
+            hash = hash(hash, generated);
+            length++;
+            if (incomparable) {
+                return;
+            }
+            final Outcome outcome = lookup(hash, length);
+            if (outcome != null) {
+                repeated = outcome;
+                throw new Repeat();
+            }
+        }
+
+        //A generator can catch what a call it made threw and carry on, having drawn who knows what, so from here on
+        //we can't tell what this candidate was handed.
+        @Override
+        public void generationFailed() {
+            depth--;
+            incomparable = true;
+        }
+
+        /**
+         * The outcome of the candidate this one repeated, or null if it didn't repeat one.
+         */
+        public Outcome repeated() {
+            return repeated;
+        }
+
+        public void finished(Throwable failure) {
+            CandidateCache.this.finished(incomparable ? null : new Key(hash, length), failure, repeated != null);
+        }
+
+        private long hash(long hash, Object value) {
+            if (value == null) {
+                return mix(hash, NULL);
+            }
+
+            hash = mix(hash, System.identityHashCode(value.getClass()));
+            if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                return mix(hash, ((Number) value).longValue());
+            }
+            if (value instanceof Double) {
+                return mix(hash, Double.doubleToLongBits((Double) value));
+            }
+            if (value instanceof Float) {
+                return mix(hash, Float.floatToIntBits((Float) value));
+            }
+            if (value instanceof Boolean) {
+                return mix(hash, (Boolean) value ? 1 : 0);
+            }
+            if (value instanceof Character) {
+                return mix(hash, (Character) value);
+            }
+            if (value instanceof CharSequence) {
+                final CharSequence chars = (CharSequence) value;
+                hash = mix(hash, chars.length());
+                for (int i = 0; i < chars.length(); i++) {
+                    hash = mix(hash, chars.charAt(i));
+                }
+                return hash;
+            }
+            if (value instanceof BigInteger || value instanceof BigDecimal) {
+                return hash(hash, value.toString());
+            }
+            if (value.getClass().isArray()) {
+                return hashArray(hash, value);
+            }
+            if (value instanceof Collection) {
+                final Collection<?> collection = (Collection<?>) value;
+                hash = mix(hash, collection.size());
+                for (Object element : collection) {
+                    hash = hash(hash, element);
+                }
+                return hash;
+            }
+            if (value instanceof Map) {
+                final Map<?, ?> map = (Map<?, ?>) value;
+                hash = mix(hash, map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    hash = hash(hash(hash, entry.getKey()), entry.getValue());
+                }
+                return hash;
+            }
+            if (value instanceof Optional) {
+                return hash(hash, ((Optional<?>) value).orElse(null));
+            }
+            if (value instanceof Enum) {
+                return mix(hash, ((Enum<?>) value).ordinal());
+            }
+            incomparable = true;
+            return hash;
+        }
+
+        private long hashArray(long hash, Object array) {
+            if (array instanceof byte[]) {
+                final byte[] bytes = (byte[]) array;
+                hash = mix(hash, bytes.length);
+                for (byte b : bytes) {
+                    hash = mix(hash, b);
+                }
+            } else if (array instanceof short[]) {
+                final short[] shorts = (short[]) array;
+                hash = mix(hash, shorts.length);
+                for (short s : shorts) {
+                    hash = mix(hash, s);
+                }
+            } else if (array instanceof int[]) {
+                final int[] ints = (int[]) array;
+                hash = mix(hash, ints.length);
+                for (int i : ints) {
+                    hash = mix(hash, i);
+                }
+            } else if (array instanceof long[]) {
+                final long[] longs = (long[]) array;
+                hash = mix(hash, longs.length);
+                for (long l : longs) {
+                    hash = mix(hash, l);
+                }
+            } else if (array instanceof float[]) {
+                final float[] floats = (float[]) array;
+                hash = mix(hash, floats.length);
+                for (float f : floats) {
+                    hash = mix(hash, Float.floatToIntBits(f));
+                }
+            } else if (array instanceof double[]) {
+                final double[] doubles = (double[]) array;
+                hash = mix(hash, doubles.length);
+                for (double d : doubles) {
+                    hash = mix(hash, Double.doubleToLongBits(d));
+                }
+            } else if (array instanceof char[]) {
+                final char[] chars = (char[]) array;
+                hash = mix(hash, chars.length);
+                for (char c : chars) {
+                    hash = mix(hash, c);
+                }
+            } else if (array instanceof boolean[]) {
+                final boolean[] booleans = (boolean[]) array;
+                hash = mix(hash, booleans.length);
+                for (boolean b : booleans) {
+                    hash = mix(hash, b ? 1 : 0);
+                }
+            } else {
+                final Object[] objects = (Object[]) array;
+                hash = mix(hash, objects.length);
+                for (Object o : objects) {
+                    hash = hash(hash, o);
+                }
+            }
+            return hash;
+        }
+    }
+
+    public static final class Outcome {
+        public final Throwable failure;
+
+        Outcome(Throwable failure) {
+            this.failure = failure;
+        }
+    }
+
+    /**
+     * Thrown out of the Source to stop a candidate once it's been handed exactly the values of a candidate we've
+     * already run, since the rest of it would go the same way.
+     */
+    public static final class Repeat extends Error {
+        public Repeat() {
+            super(null, null, false, false);
+        }
+    }
+
+    static long mix(long hash, long value) {
+        hash = (hash ^ value) * 0x9e3779b97f4a7c15L;
+        return hash ^ (hash >>> 29);
+    }
+
+    private static final class Key {
+        private final long hash;
+        private final int length;
+
+        private Key(long hash, int length) {
+            this.hash = hash;
+            this.length = length;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final Key key = (Key) o;
+            return hash == key.hash && length == key.length;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(hash) * 31 + length;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package net.lfn3.undertaker.junit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Keeps the inputs that reached code no earlier trial did, and spends every other trial on variations of them rather
+ * than on fresh random inputs. Needs the coverage agent, net.lfn3.undertaker.junit.coverage.CoverageAgent, to
+ * instrument the code under test. Without it the test runs as usual.
+ * At most maxCorpus inputs are kept. Only inputs that drew a default sized collection, array or string are varied,
+ * since a variation reruns the input at another size. Coverage growth over the run is printed when the test finishes.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface CoverageGuided {
+    int maxCorpus() default 256;
+}
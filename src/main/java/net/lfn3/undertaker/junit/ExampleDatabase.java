@@ -0,0 +1,137 @@
+package net.lfn3.undertaker.junit;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Stores the seeds of failing tests on disk, so they can be replayed before any new trials are run.
+ * <p>
+ * There's one file per test method, at {@code <directory>/<test class>/<test method>.examples}. Each file is a header
+ * followed by a list of examples, where an example is the seed and the number of trials to run it for, as two longs,
+ * and the size scale it failed at, as a double.
+ * The directory is set with the {@value #DIRECTORY_PROPERTY} system property, and setting it to an empty string turns
+ * the database off. Every test using the same directory shares one instance, so saves from tests running at the same
+ * time don't overwrite each other.
+ */
+public final class ExampleDatabase {
+    public static final String DIRECTORY_PROPERTY = "undertaker.examples.dir";
+    public static final String DEFAULT_DIRECTORY = "target/undertaker/examples";
+    public static final int MAX_EXAMPLES_PER_TEST = 64;
+
+    private static final int MAGIC = 0x55544558; //UTEX
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final int EXAMPLE_BYTES = 2 * Long.BYTES + Double.BYTES;
+    private static final ConcurrentMap<Path, ExampleDatabase> DATABASES = new ConcurrentHashMap<>();
+
+    private final Path directory;
+
+    public ExampleDatabase(Path directory) {
+        this.directory = directory;
+    }
+
+    public static ExampleDatabase fromSystemProperties() {
+        final String directory = System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY);
+        return directory.isEmpty() ?
+                null :
+                DATABASES.computeIfAbsent(Paths.get(directory).toAbsolutePath().normalize(), ExampleDatabase::new);
+    }
+
+    public static final class Example {
+        public final long seed;
+        public final long trials;
+        public final double scale;
+
+        public Example(long seed, long trials, double scale) {
+            this.seed = seed;
+            this.trials = trials;
+            this.scale = scale;
+        }
+    }
+
+    public synchronized List<Example> examples(String testClass, String testMethod) {
+        final Path file = fileFor(testClass, testMethod);
+        final List<Example> examples = new ArrayList<>();
+        if (!Files.isRegularFile(file)) {
+            return examples;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            //Read into the heap rather than mapping the file, a live mapping stops write replacing it on Windows.
+            final ByteBuffer buffer = ByteBuffer.allocate(
+                    (int) Math.min(channel.size(), HEADER_BYTES + MAX_EXAMPLES_PER_TEST * EXAMPLE_BYTES));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return examples; //Not something we wrote, or from a version we can't read. It'll get overwritten.
+            }
+            while (buffer.remaining() >= EXAMPLE_BYTES) {
+                examples.add(new Example(buffer.getLong(), buffer.getLong(), buffer.getDouble()));
+            }
+            return examples;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public synchronized void save(String testClass, String testMethod, long seed, long trials, double scale) {
+        final List<Example> examples = examples(testClass, testMethod);
+        examples.removeIf(e -> e.seed == seed);
+        examples.add(0, new Example(seed, trials, scale));
+        write(testClass, testMethod, examples.subList(0, Math.min(examples.size(), MAX_EXAMPLES_PER_TEST)));
+    }
+
+    public synchronized void remove(String testClass, String testMethod, long seed) {
+        final List<Example> examples = examples(testClass, testMethod);
+        if (examples.removeIf(e -> e.seed == seed)) {
+            write(testClass, testMethod, examples);
+        }
+    }
+
+    private void write(String testClass, String testMethod, List<Example> examples) {
+        final Path file = fileFor(testClass, testMethod);
+        try {
+            if (examples.isEmpty()) {
+                Files.deleteIfExists(file);
+                return;
+            }
+
+            final ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + examples.size() * EXAMPLE_BYTES);
+            buffer.putInt(MAGIC).putInt(VERSION);
+            for (Example example : examples) {
+                buffer.putLong(example.seed).putLong(example.trials).putDouble(example.scale);
+            }
+            buffer.flip();
+
+            Files.createDirectories(file.getParent());
+            final Path temp = Files.createTempFile(file.getParent(), testMethod, ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Path fileFor(String testClass, String testMethod) {
+        return directory.resolve(testClass).resolve(testMethod + ".examples");
+    }
+}
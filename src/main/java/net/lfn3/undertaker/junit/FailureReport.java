@@ -0,0 +1,35 @@
+package net.lfn3.undertaker.junit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Limits how much of a failing value ends up in the failure message. Collections are cut off after length elements,
+ * and nesting below depth levels, counting from each failing value. Primitive arrays are summarised as their length and first arrayElements elements,
+ * in hex for byte arrays. The whole message is cut off at maxChars.
+ * With writeFullReport the untruncated values are also written to a file in target/surefire-reports
+ * (or the undertaker.reports.dir system property), and the message says where to find it.
+ * Tests without this annotation get the defaults.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface FailureReport {
+    int DEFAULT_DEPTH = 8;
+    int DEFAULT_LENGTH = 64;
+    int DEFAULT_ARRAY_ELEMENTS = 64;
+    int DEFAULT_MAX_CHARS = 64 * 1024;
+    String DIRECTORY_PROPERTY = "undertaker.reports.dir";
+    String DEFAULT_DIRECTORY = "target/surefire-reports";
+
+    int depth() default DEFAULT_DEPTH;
+
+    int length() default DEFAULT_LENGTH;
+
+    int arrayElements() default DEFAULT_ARRAY_ELEMENTS;
+
+    int maxChars() default DEFAULT_MAX_CHARS;
+
+    boolean writeFullReport() default false;
+}
@@ -0,0 +1,19 @@
+package net.lfn3.undertaker.junit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Has GenerateSourceProcessor write a Generator for the class at compile time, which calls a constructor directly
+ * rather than through reflection. On a class, its only public constructor is used. If it has more than one, put this
+ * on the one to use instead.
+ * The generator is named after the class, so Order gets an OrderGenerator and Outer.Inner gets an
+ * Outer_InnerGenerator, in the same package. SourceRule uses it for the class unless it's been given a generator
+ * for that exact class.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.TYPE, ElementType.CONSTRUCTOR})
+public @interface GenerateSource {
+}
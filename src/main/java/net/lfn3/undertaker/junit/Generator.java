@@ -1,11 +1,73 @@
 package net.lfn3.undertaker.junit;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
+/**
+ * Combinators run the generators they're built from directly against the source, rather than through
+ * source.generate(...), so a chain of them only adds an interval where shrinking needs one: around each attempt made
+ * by filter, so attempts that were rejected can be removed.
+ */
 @FunctionalInterface
 public interface Generator<T> extends Function<Source, T> {
+    int DEFAULT_FILTER_RETRIES = 100;
+
     static <U> Generator<U> asGenerator(Function<Source, U> f)
     {
         return f::apply;
     }
+
+    @SafeVarargs
+    static <U> Generator<U> oneOf(Function<Source, ? extends U>... generators)
+    {
+        //Copied rather than handing the varargs array on, which is what keeps this safe.
+        final List<Function<Source, ? extends U>> choices = new ArrayList<>(generators.length);
+        for (Function<Source, ? extends U> generator : generators) {
+            choices.add(generator);
+        }
+        return s -> s.from(choices).apply(s);
+    }
+
+    default <R> Generator<R> map(Function<? super T, ? extends R> f)
+    {
+        return s -> f.apply(apply(s));
+    }
+
+    default <R> Generator<R> flatMap(Function<? super T, ? extends Function<Source, ? extends R>> f)
+    {
+        return s -> f.apply(apply(s)).apply(s);
+    }
+
+    default <U, R> Generator<R> zip(Function<Source, ? extends U> other, BiFunction<? super T, ? super U, ? extends R> f)
+    {
+        return s -> f.apply(apply(s), other.apply(s));
+    }
+
+    default Generator<T> filter(Predicate<? super T> predicate)
+    {
+        return filter(predicate, DEFAULT_FILTER_RETRIES);
+    }
+
+    default Generator<T> filter(Predicate<? super T> predicate, int maxRetries)
+    {
+        return s -> {
+            for (int attempt = 0; attempt <= maxRetries; attempt++) {
+                T value = null;
+                s.pushInterval();
+                try {
+                    value = apply(s);
+                } finally {
+                    s.popInterval(value);
+                }
+                if (predicate.test(value)) {
+                    return value;
+                }
+            }
+            throw new IllegalStateException("Couldn't generate a value matching the filter in " + (maxRetries + 1) +
+                    " attempts. Consider generating values that match it instead of filtering.");
+        };
+    }
 }
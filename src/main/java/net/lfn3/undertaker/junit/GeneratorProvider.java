@@ -0,0 +1,12 @@
+package net.lfn3.undertaker.junit;
+
+import java.util.Map;
+
+/**
+ * Generators for the classes in a library, found through java.util.ServiceLoader and registered with every Source.
+ * List implementations in META-INF/services/net.lfn3.undertaker.junit.GeneratorProvider. Generators passed to a
+ * SourceRule's constructor take precedence over these.
+ */
+public interface GeneratorProvider {
+    Map<Class<?>, Generator<?>> generators();
+}
@@ -0,0 +1,136 @@
+package net.lfn3.undertaker.junit;
+
+import java.lang.reflect.Constructor;
+import java.util.*;
+
+/**
+ * Looks up generators by class. A generator registered for a class is also used for that class's superclasses and
+ * interfaces, as long as it's the only registered generator that can be used for them: if there are generators for
+ * both ArrayList and LinkedList, neither is used for List. Classes with @GenerateSource use the generator written
+ * for them at compile time, unless one was registered for that exact class. Lookups are worked out once per class,
+ * and cached.
+ * <p>
+ * The registry only sees classes, so when a type has type arguments, i.e. List&lt;Foo&gt;, the Source checks for a
+ * generic generator with {@link #lookupExact(Class)} first, and only falls back to {@link #lookup(Class)} if there
+ * isn't one.
+ */
+public final class GeneratorRegistry<V> {
+    private static final ClassValue<Object[]> ENUM_CONSTANTS = new ClassValue<Object[]>() {
+        @Override
+        protected Object[] computeValue(Class<?> type) {
+            return type.getEnumConstants();
+        }
+    };
+
+    private static final Object NONE = new Object();
+
+    private final Map<Class<?>, V> generators;
+    private final ClassValue<Object> lookups = new ClassValue<Object>() {
+        @Override
+        protected Object computeValue(Class<?> type) {
+            return resolve(type);
+        }
+    };
+
+    public GeneratorRegistry(Map<Class<?>, V> generators) {
+        this.generators = generators;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V lookup(Class<?> type) {
+        final Object generator = lookups.get(type);
+        return generator == NONE ? null : (V) generator;
+    }
+
+    /**
+     * Only the generator registered for exactly this class, if there is one.
+     */
+    public V lookupExact(Class<?> type) {
+        return generators.get(type);
+    }
+
+    public boolean contains(Class<?> type) {
+        return lookups.get(type) != NONE;
+    }
+
+    /**
+     * The array is shared, so it mustn't be modified.
+     */
+    public static Object[] enumConstants(Class<?> enumClass) {
+        return ENUM_CONSTANTS.get(enumClass);
+    }
+
+    public static List<GeneratorProvider> providers() {
+        return Providers.PROVIDERS;
+    }
+
+    /**
+     * The binary name of the generator GenerateSourceProcessor writes for the class with the given binary name.
+     */
+    public static String generatedGeneratorName(String binaryName) {
+        final int simpleNameStart = binaryName.lastIndexOf('.') + 1;
+        return binaryName.substring(0, simpleNameStart) +
+                binaryName.substring(simpleNameStart).replace('$', '_') +
+                "Generator";
+    }
+
+    private Object resolve(Class<?> type) {
+        final V exact = generators.get(type);
+        if (exact != null) {
+            return exact;
+        }
+
+        final Object generated = generatedGenerator(type);
+        if (generated != null) {
+            return generated;
+        }
+
+        V found = null;
+        for (Map.Entry<Class<?>, V> entry : generators.entrySet()) {
+            if (type.isAssignableFrom(entry.getKey())) {
+                if (found != null) {
+                    return NONE;
+                }
+                found = entry.getValue();
+            }
+        }
+        return found == null ? NONE : found;
+    }
+
+    private static Object generatedGenerator(Class<?> type) {
+        if (!hasGenerateSource(type)) {
+            return null;
+        }
+        try {
+            return Class.forName(generatedGeneratorName(type.getName()), true, type.getClassLoader())
+                    .getConstructor()
+                    .newInstance();
+        } catch (ReflectiveOperationException e) {
+            return null; //The processor didn't run when the class was compiled, so it'll be generated reflectively.
+        }
+    }
+
+    private static boolean hasGenerateSource(Class<?> type) {
+        if (type.isAnnotationPresent(GenerateSource.class)) {
+            return true;
+        }
+        for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+            if (constructor.isAnnotationPresent(GenerateSource.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class Providers {
+        private static final List<GeneratorProvider> PROVIDERS = load();
+
+        private static List<GeneratorProvider> load() {
+            final List<GeneratorProvider> providers = new ArrayList<>();
+            for (GeneratorProvider provider : ServiceLoader.load(GeneratorProvider.class)) {
+                providers.add(provider);
+            }
+            return Collections.unmodifiableList(providers);
+        }
+    }
+}
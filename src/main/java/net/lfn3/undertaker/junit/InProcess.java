@@ -0,0 +1,16 @@
+package net.lfn3.undertaker.junit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs each trial against a runner built once per test method, rather than through a new JUnitCore request.
+ * Every trial still gets a fresh instance of the test class, and its own run of any @Before/@After methods and rules.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface InProcess {
+    boolean value();
+}
@@ -0,0 +1,27 @@
+package net.lfn3.undertaker.junit;
+
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.Statement;
+
+public class InProcessTrialRunner extends BlockJUnit4ClassRunner {
+    private final FrameworkMethod method;
+
+    public InProcessTrialRunner(Class<?> testClass, String methodName) throws InitializationError {
+        super(testClass);
+        method = getChildren().stream()
+                .filter(m -> m.getName().equals(methodName))
+                .findFirst()
+                .orElseThrow(() -> new InitializationError(
+                        "Could not find test method " + methodName + " in " + testClass.getName()));
+    }
+
+    /**
+     * Builds the statement for a single trial. This creates a new instance of the test class, and wraps it with
+     * the class's @Before/@After methods and rules, but skips the rest of the work JUnitCore does for a run.
+     */
+    public Statement trialStatement() {
+        return methodBlock(method);
+    }
+}
@@ -0,0 +1,18 @@
+package net.lfn3.undertaker.junit;
+
+import net.lfn3.undertaker.junit.instrumentation.TrialListener;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Listeners to tell about each trial, and each test once it's done. A new instance of each listener is created for
+ * every test, so they need a public no argument constructor.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface Listeners {
+    Class<? extends TrialListener>[] value();
+}
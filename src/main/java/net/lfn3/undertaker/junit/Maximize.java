@@ -0,0 +1,25 @@
+package net.lfn3.undertaker.junit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Searches for the input that scores highest, rather than for one that fails. LATENCY scores a trial by how long the
+ * body of the test took in nanoseconds, ALLOCATED_BYTES by how much the thread running it allocated, and TARGET by
+ * the highest score the test passed to source.target.
+ * Once the trials have run, the best input is shrunk to the simplest one that scores at least as high, and both are
+ * printed along with the seed. The test only fails if a trial throws.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface Maximize {
+    Metric metric() default Metric.LATENCY;
+
+    enum Metric {
+        LATENCY,
+        ALLOCATED_BYTES,
+        TARGET
+    }
+}
@@ -0,0 +1,18 @@
+package net.lfn3.undertaker.junit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Spreads the trials for a test over a pool of threads. Each trial is given its own seed derived from the test's seed
+ * and its index, and a failure stops any trial with a higher index from starting. Only the search for a failure is
+ * parallel: the failure with the lowest index is shrunk on the test's thread, one candidate at a time.
+ * Setting threads to 0 uses one thread per available processor.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface Parallel {
+    int threads() default 0;
+}
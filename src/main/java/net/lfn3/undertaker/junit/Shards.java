@@ -0,0 +1,73 @@
+package net.lfn3.undertaker.junit;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Splits the trials of each test between a number of shards, usually on different machines. Trial i runs on shard
+ * i mod count, with the seed derived from the test's seed and i, so every shard has to be given the same seed, either
+ * with @Seed or the {@value #SEED_PROPERTY} system property. Tests with @Maximize or @CoverageGuided fail if they're
+ * sharded, since each of their trials depends on the ones before it.
+ * <p>
+ * The shard is set with the {@value #INDEX_PROPERTY} and {@value #COUNT_PROPERTY} system properties. Each shard writes
+ * what it ran to {@code <directory>/<test class>.<test method>.<index>-of-<count>.edn}, and those files can be merged
+ * with {@code lein merge-shards <directory>}. The directory is set with the {@value #DIRECTORY_PROPERTY} system
+ * property.
+ */
+public final class Shards {
+    public static final String INDEX_PROPERTY = "undertaker.shard.index";
+    public static final String COUNT_PROPERTY = "undertaker.shard.count";
+    public static final String SEED_PROPERTY = "undertaker.seed";
+    public static final String DIRECTORY_PROPERTY = "undertaker.shards.dir";
+    public static final String DEFAULT_DIRECTORY = "target/undertaker-shards";
+
+    private final int index;
+    private final int count;
+    private final Path directory;
+
+    public Shards(int index, int count, Path directory) {
+        if (count < 1 || index < 0 || count <= index) {
+            throw new IllegalArgumentException("Shard index must be at least 0 and less than the shard count, but was "
+                    + index + " of " + count);
+        }
+        this.index = index;
+        this.count = count;
+        this.directory = directory;
+    }
+
+    public static Shards fromSystemProperties() {
+        final String count = System.getProperty(COUNT_PROPERTY);
+        if (count == null || count.isEmpty()) {
+            return null;
+        }
+        return new Shards(Integer.parseInt(System.getProperty(INDEX_PROPERTY, "0")),
+                          Integer.parseInt(count),
+                          Paths.get(System.getProperty(DIRECTORY_PROPERTY, DEFAULT_DIRECTORY)));
+    }
+
+    public int index() {
+        return index;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    /**
+     * How many of a total of trials trials this shard runs.
+     */
+    public long trials(long trials) {
+        return trials <= index ? 0 : (trials - index + count - 1) / count;
+    }
+
+    /**
+     * The index, out of every shard's trials, of this shard's nth trial.
+     */
+    public long trialIndex(long n) {
+        return index + n * count;
+    }
+
+    public Path resultFile(String testClass, String testMethod) {
+        return directory.resolve(testClass + "." + testMethod + "." + index + "-of-" + count + ".edn");
+    }
+}
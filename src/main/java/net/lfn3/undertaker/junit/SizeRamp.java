@@ -0,0 +1,22 @@
+package net.lfn3.undertaker.junit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Scales the default maximum size of collections, arrays and strings over the course of a run, starting at
+ * fromPercent of the default and growing linearly to toPercent over the first trials trials. Sizes passed explicitly
+ * aren't scaled. With trials = 0 every trial uses fromPercent. Once a trial fails, its shrinking uses the same sizes.
+ * The percentages can be fractional, so the exact size a failure was found at can be given back to rerun it.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface SizeRamp {
+    double fromPercent() default 5;
+
+    double toPercent() default 100;
+
+    int trials() default 100;
+}
@@ -11,10 +11,12 @@ public interface Source extends BoolSource,
                                 ShortArraySource,
                                 IntSource,
                                 IntArraySource,
+                                DistinctIntArraySource,
                                 CharSource,
                                 CharArraySource,
                                 LongSource,
                                 LongArraySource,
+                                DistinctLongArraySource,
                                 FloatSource,
                                 FloatArraySource,
                                 DoubleSource,
@@ -29,6 +31,7 @@ public interface Source extends BoolSource,
                                 FromCollectionSource,
                                 ReflectiveSource,
                                 NullableSource,
+                                TargetSource,
                                 TestRule {
     void pushInterval();
 
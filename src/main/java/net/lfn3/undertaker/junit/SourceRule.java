@@ -0,0 +1,656 @@
+package net.lfn3.undertaker.junit;
+
+import net.lfn3.undertaker.junit.generators.ShortGenerator;
+import net.lfn3.undertaker.junit.primitive.functions.ToBooleanFunction;
+import net.lfn3.undertaker.junit.primitive.functions.ToByteFunction;
+import net.lfn3.undertaker.junit.primitive.functions.ToCharFunction;
+import net.lfn3.undertaker.junit.primitive.functions.ToFloatFunction;
+import net.lfn3.undertaker.junit.primitive.functions.ToShortFunction;
+import org.junit.runner.Description;
+import org.junit.runners.model.Statement;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * The Source to use as a junit rule. It's a thin shell over ClojureSourceRule, which is only loaded, along with the
+ * Clojure runtime and undertaker, the first time the rule is applied or asked for a value. So test classes that are
+ * loaded but never run, or that only construct the rule, don't pay for loading Clojure.
+ * Every method is forwarded, including the ones Source has defaults for, since the default sizes are worked out in
+ * ClojureSourceRule, where @SizeRamp and the size variations of @CoverageGuided and @Maximize apply to them.
+ */
+public class SourceRule implements Source {
+    private static final String IMPLEMENTATION = "net.lfn3.undertaker.junit.ClojureSourceRule";
+
+    @SuppressWarnings("rawtypes")
+    private final Map<? extends Class, ? extends Generator> classToGenerator;
+    @SuppressWarnings("rawtypes")
+    private final Map<? extends Class, ? extends GenericGenerator> genericClassToGenerator;
+    private volatile Source source;
+
+    public SourceRule() {
+        this(Collections.emptyMap());
+    }
+
+    @SuppressWarnings("rawtypes")
+    public SourceRule(Map<? extends Class, ? extends Generator> classToGenerator) {
+        this(classToGenerator, Collections.emptyMap());
+    }
+
+    @SuppressWarnings("rawtypes")
+    public SourceRule(Map<? extends Class, ? extends Generator> classToGenerator,
+                      Map<? extends Class, ? extends GenericGenerator> genericClassToGenerator) {
+        this.classToGenerator = classToGenerator;
+        this.genericClassToGenerator = genericClassToGenerator;
+    }
+
+    private Source source() {
+        Source source = this.source;
+        if (source == null) {
+            synchronized (this) {
+                source = this.source;
+                if (source == null) {
+                    source = load();
+                    this.source = source;
+                }
+            }
+        }
+        return source;
+    }
+
+    //ClojureSourceRule is compiled from Clojure after the Java sources, so it can only be reached reflectively.
+    private Source load() {
+        try {
+            return (Source) Class.forName(IMPLEMENTATION, true, SourceRule.class.getClassLoader())
+                    .getConstructor(Map.class, Map.class)
+                    .newInstance(classToGenerator, genericClassToGenerator);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException("Couldn't create a " + IMPLEMENTATION, e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Couldn't create a " + IMPLEMENTATION, e);
+        }
+    }
+
+    @Override
+    public void pushInterval() {
+        source().pushInterval();
+    }
+
+    @Override
+    public void popInterval(Object arg0) {
+        source().popInterval(arg0);
+    }
+
+    @Override
+    public boolean nextBool() {
+        return source().nextBool();
+    }
+
+    @Override
+    public boolean[] nextBooleanArray(ToBooleanFunction<Source> arg0, int arg1, int arg2) {
+        return source().nextBooleanArray(arg0, arg1, arg2);
+    }
+
+    @Override
+    public boolean[] nextBooleanArray(ToBooleanFunction<Source> arg0, int arg1) {
+        return source().nextBooleanArray(arg0, arg1);
+    }
+
+    @Override
+    public boolean[] nextBooleanArray(ToBooleanFunction<Source> arg0) {
+        return source().nextBooleanArray(arg0);
+    }
+
+    @Override
+    public boolean[] nextBooleanArray() {
+        return source().nextBooleanArray();
+    }
+
+    @Override
+    public byte nextByte(int arg0, int arg1) {
+        return source().nextByte(arg0, arg1);
+    }
+
+    @Override
+    public byte nextByte(int arg0) {
+        return source().nextByte(arg0);
+    }
+
+    @Override
+    public byte nextByte(byte arg0, byte arg1) {
+        return source().nextByte(arg0, arg1);
+    }
+
+    @Override
+    public byte nextByte(byte arg0) {
+        return source().nextByte(arg0);
+    }
+
+    @Override
+    public byte nextByte() {
+        return source().nextByte();
+    }
+
+    @Override
+    public byte[] nextByteArray(ToByteFunction<Source> arg0, int arg1, int arg2) {
+        return source().nextByteArray(arg0, arg1, arg2);
+    }
+
+    @Override
+    public byte[] nextByteArray(ToByteFunction<Source> arg0, int arg1) {
+        return source().nextByteArray(arg0, arg1);
+    }
+
+    @Override
+    public byte[] nextByteArray(ToByteFunction<Source> arg0) {
+        return source().nextByteArray(arg0);
+    }
+
+    @Override
+    public byte[] nextByteArray() {
+        return source().nextByteArray();
+    }
+
+    @Override
+    public short nextShort(int arg0, int arg1, int... arg2) {
+        return source().nextShort(arg0, arg1, arg2);
+    }
+
+    @Override
+    public short nextShort(int arg0) {
+        return source().nextShort(arg0);
+    }
+
+    @Override
+    public short nextShort(short arg0, short arg1, short... arg2) {
+        return source().nextShort(arg0, arg1, arg2);
+    }
+
+    @Override
+    public short nextShort(short arg0) {
+        return source().nextShort(arg0);
+    }
+
+    @Override
+    public short nextShort() {
+        return source().nextShort();
+    }
+
+    @Override
+    public short[] nextShortArray(ToShortFunction<Source> arg0, int arg1, int arg2) {
+        return source().nextShortArray(arg0, arg1, arg2);
+    }
+
+    @Override
+    public short[] nextShortArray(ToShortFunction<Source> arg0, int arg1) {
+        return source().nextShortArray(arg0, arg1);
+    }
+
+    @Override
+    public short[] nextShortArray(ToShortFunction<Source> arg0) {
+        return source().nextShortArray(arg0);
+    }
+
+    @Override
+    public short[] nextShortArray() {
+        return source().nextShortArray();
+    }
+
+    @Override
+    public int nextInt(int arg0, int arg1, int... arg2) {
+        return source().nextInt(arg0, arg1, arg2);
+    }
+
+    @Override
+    public int nextInt(int arg0, int arg1) {
+        return source().nextInt(arg0, arg1);
+    }
+
+    @Override
+    public int nextInt(int arg0) {
+        return source().nextInt(arg0);
+    }
+
+    @Override
+    public int nextInt() {
+        return source().nextInt();
+    }
+
+    @Override
+    public int[] nextIntArray(ToIntFunction<Source> arg0, int arg1, int arg2) {
+        return source().nextIntArray(arg0, arg1, arg2);
+    }
+
+    @Override
+    public int[] nextIntArray(ToIntFunction<Source> arg0, int arg1) {
+        return source().nextIntArray(arg0, arg1);
+    }
+
+    @Override
+    public int[] nextIntArray(ToIntFunction<Source> arg0) {
+        return source().nextIntArray(arg0);
+    }
+
+    @Override
+    public int[] nextIntArray() {
+        return source().nextIntArray();
+    }
+
+    @Override
+    public int[] nextDistinctIntArray(ToIntFunction<Source> arg0, int arg1, int arg2) {
+        return source().nextDistinctIntArray(arg0, arg1, arg2);
+    }
+
+    @Override
+    public int[] nextDistinctIntArray(ToIntFunction<Source> arg0, int arg1) {
+        return source().nextDistinctIntArray(arg0, arg1);
+    }
+
+    @Override
+    public int[] nextDistinctIntArray(ToIntFunction<Source> arg0) {
+        return source().nextDistinctIntArray(arg0);
+    }
+
+    @Override
+    public int[] nextDistinctIntArray() {
+        return source().nextDistinctIntArray();
+    }
+
+    @Override
+    public int[] nextSortedDistinctIntArray(ToIntFunction<Source> arg0, int arg1, int arg2) {
+        return source().nextSortedDistinctIntArray(arg0, arg1, arg2);
+    }
+
+    @Override
+    public int[] nextSortedDistinctIntArray(ToIntFunction<Source> arg0) {
+        return source().nextSortedDistinctIntArray(arg0);
+    }
+
+    @Override
+    public char nextChar() {
+        return source().nextChar();
+    }
+
+    @Override
+    public char nextChar(ShortGenerator arg0) {
+        return source().nextChar(arg0);
+    }
+
+    @Override
+    public char[] nextCharArray(ToCharFunction<Source> arg0, int arg1, int arg2) {
+        return source().nextCharArray(arg0, arg1, arg2);
+    }
+
+    @Override
+    public char[] nextCharArray(ToCharFunction<Source> arg0, int arg1) {
+        return source().nextCharArray(arg0, arg1);
+    }
+
+    @Override
+    public char[] nextCharArray(ToCharFunction<Source> arg0) {
+        return source().nextCharArray(arg0);
+    }
+
+    @Override
+    public char[] nextCharArray() {
+        return source().nextCharArray();
+    }
+
+    @Override
+    public long nextLong() {
+        return source().nextLong();
+    }
+
+    @Override
+    public long nextLong(long arg0) {
+        return source().nextLong(arg0);
+    }
+
+    @Override
+    public long nextLong(long arg0, long arg1) {
+        return source().nextLong(arg0, arg1);
+    }
+
+    @Override
+    public long[] nextLongArray(ToLongFunction<Source> arg0, int arg1, int arg2) {
+        return source().nextLongArray(arg0, arg1, arg2);
+    }
+
+    @Override
+    public long[] nextLongArray(ToLongFunction<Source> arg0, int arg1) {
+        return source().nextLongArray(arg0, arg1);
+    }
+
+    @Override
+    public long[] nextLongArray(ToLongFunction<Source> arg0) {
+        return source().nextLongArray(arg0);
+    }
+
+    @Override
+    public long[] nextLongArray() {
+        return source().nextLongArray();
+    }
+
+    @Override
+    public long[] nextDistinctLongArray(ToLongFunction<Source> arg0, int arg1, int arg2) {
+        return source().nextDistinctLongArray(arg0, arg1, arg2);
+    }
+
+    @Override
+    public long[] nextDistinctLongArray(ToLongFunction<Source> arg0, int arg1) {
+        return source().nextDistinctLongArray(arg0, arg1);
+    }
+
+    @Override
+    public long[] nextDistinctLongArray(ToLongFunction<Source> arg0) {
+        return source().nextDistinctLongArray(arg0);
+    }
+
+    @Override
+    public long[] nextDistinctLongArray() {
+        return source().nextDistinctLongArray();
+    }
+
+    @Override
+    public long[] nextSortedDistinctLongArray(ToLongFunction<Source> arg0, int arg1, int arg2) {
+        return source().nextSortedDistinctLongArray(arg0, arg1, arg2);
+    }
+
+    @Override
+    public long[] nextSortedDistinctLongArray(ToLongFunction<Source> arg0) {
+        return source().nextSortedDistinctLongArray(arg0);
+    }
+
+    @Override
+    public float nextFloat() {
+        return source().nextFloat();
+    }
+
+    @Override
+    public float nextFloat(float arg0) {
+        return source().nextFloat(arg0);
+    }
+
+    @Override
+    public float nextFloat(float arg0, float arg1) {
+        return source().nextFloat(arg0, arg1);
+    }
+
+    @Override
+    public float[] nextFloatArray(ToFloatFunction<Source> arg0, int arg1, int arg2) {
+        return source().nextFloatArray(arg0, arg1, arg2);
+    }
+
+    @Override
+    public float[] nextFloatArray(ToFloatFunction<Source> arg0, int arg1) {
+        return source().nextFloatArray(arg0, arg1);
+    }
+
+    @Override
+    public float[] nextFloatArray(ToFloatFunction<Source> arg0) {
+        return source().nextFloatArray(arg0);
+    }
+
+    @Override
+    public float[] nextFloatArray() {
+        return source().nextFloatArray();
+    }
+
+    @Override
+    public double nextDouble(double arg0, double arg1) {
+        return source().nextDouble(arg0, arg1);
+    }
+
+    @Override
+    public double nextDouble(double arg0) {
+        return source().nextDouble(arg0);
+    }
+
+    @Override
+    public double nextDouble() {
+        return source().nextDouble();
+    }
+
+    @Override
+    public double nextRealDouble(double arg0, double arg1) {
+        return source().nextRealDouble(arg0, arg1);
+    }
+
+    @Override
+    public double nextRealDouble(double arg0) {
+        return source().nextRealDouble(arg0);
+    }
+
+    @Override
+    public double nextRealDouble() {
+        return source().nextRealDouble();
+    }
+
+    @Override
+    public double[] nextDoubleArray(ToDoubleFunction<Source> arg0, int arg1, int arg2) {
+        return source().nextDoubleArray(arg0, arg1, arg2);
+    }
+
+    @Override
+    public double[] nextDoubleArray(ToDoubleFunction<Source> arg0, int arg1) {
+        return source().nextDoubleArray(arg0, arg1);
+    }
+
+    @Override
+    public double[] nextDoubleArray(ToDoubleFunction<Source> arg0) {
+        return source().nextDoubleArray(arg0);
+    }
+
+    @Override
+    public double[] nextDoubleArray() {
+        return source().nextDoubleArray();
+    }
+
+    @Override
+    public String nextString(ShortGenerator arg0, int arg1, int arg2) {
+        return source().nextString(arg0, arg1, arg2);
+    }
+
+    @Override
+    public String nextString(ShortGenerator arg0, int arg1) {
+        return source().nextString(arg0, arg1);
+    }
+
+    @Override
+    public String nextString(ShortGenerator arg0) {
+        return source().nextString(arg0);
+    }
+
+    @Override
+    public String nextString() {
+        return source().nextString();
+    }
+
+    @Override
+    public <T> List<T> nextList(Generator<T> arg0, int arg1, int arg2) {
+        return source().nextList(arg0, arg1, arg2);
+    }
+
+    @Override
+    public <T> List<T> nextList(Generator<T> arg0, int arg1) {
+        return source().nextList(arg0, arg1);
+    }
+
+    @Override
+    public <T> List<T> nextList(Generator<T> arg0) {
+        return source().nextList(arg0);
+    }
+
+    @Override
+    public <T> Stream<T> nextStream(Generator<T> arg0, int arg1, int arg2) {
+        return source().nextStream(arg0, arg1, arg2);
+    }
+
+    @Override
+    public <T> Stream<T> nextStream(Generator<T> arg0, int arg1) {
+        return source().nextStream(arg0, arg1);
+    }
+
+    @Override
+    public <T> Stream<T> nextStream(Generator<T> arg0) {
+        return source().nextStream(arg0);
+    }
+
+    @Override
+    public <T> T[] nextArray(Class<T> arg0, Generator<T> arg1) {
+        return source().nextArray(arg0, arg1);
+    }
+
+    @Override
+    public <T> T[] nextArray(Class<T> arg0, Generator<T> arg1, int arg2) {
+        return source().nextArray(arg0, arg1, arg2);
+    }
+
+    @Override
+    public <T> T[] nextArray(Class<T> arg0, Generator<T> arg1, int arg2, int arg3) {
+        return source().nextArray(arg0, arg1, arg2, arg3);
+    }
+
+    @Override
+    public <T> T generate(Function<Source, T> arg0) {
+        return source().generate(arg0);
+    }
+
+    @Override
+    public <T> T generate(Class<T> arg0) {
+        return source().generate(arg0);
+    }
+
+    @Override
+    public <T> T generate(Generator<T> arg0) {
+        return source().generate(arg0);
+    }
+
+    @Override
+    public <T> T generateFlat(Generator<T> arg0) {
+        return source().generateFlat(arg0);
+    }
+
+    @Override
+    public <T> T generateLeaf(Generator<T> arg0) {
+        return source().generateLeaf(arg0);
+    }
+
+    @Override
+    public <T> T generateLeaf(Class<T> arg0) {
+        return source().generateLeaf(arg0);
+    }
+
+    @Override
+    public <K, V> Map<K, V> nextMap(Generator<K> arg0, BiFunction<Source, K, V> arg1, int arg2, int arg3) {
+        return source().nextMap(arg0, arg1, arg2, arg3);
+    }
+
+    @Override
+    public <K, V> Map<K, V> nextMap(Generator<K> arg0, BiFunction<Source, K, V> arg1, int arg2) {
+        return source().nextMap(arg0, arg1, arg2);
+    }
+
+    @Override
+    public <K, V> Map<K, V> nextMap(Generator<K> arg0, BiFunction<Source, K, V> arg1) {
+        return source().nextMap(arg0, arg1);
+    }
+
+    @Override
+    public <K, V> Map<K, V> nextMap(Generator<K> arg0, Generator<V> arg1, int arg2, int arg3) {
+        return source().nextMap(arg0, arg1, arg2, arg3);
+    }
+
+    @Override
+    public <K, V> Map<K, V> nextMap(Generator<K> arg0, Generator<V> arg1, int arg2) {
+        return source().nextMap(arg0, arg1, arg2);
+    }
+
+    @Override
+    public <K, V> Map<K, V> nextMap(Generator<K> arg0, Generator<V> arg1) {
+        return source().nextMap(arg0, arg1);
+    }
+
+    @Override
+    public <V> Set<V> nextSet(Generator<V> arg0) {
+        return source().nextSet(arg0);
+    }
+
+    @Override
+    public <V> Set<V> nextSet(Generator<V> arg0, int arg1) {
+        return source().nextSet(arg0, arg1);
+    }
+
+    @Override
+    public <V> Set<V> nextSet(Generator<V> arg0, int arg1, int arg2) {
+        return source().nextSet(arg0, arg1, arg2);
+    }
+
+    @Override
+    public <T extends Enum> T nextEnum(Class<T> arg0) {
+        return source().nextEnum(arg0);
+    }
+
+    @Override
+    public <T> T from(Collection<T> arg0) {
+        return source().from(arg0);
+    }
+
+    @Override
+    public <T> T from(T[] arg0) {
+        return source().from(arg0);
+    }
+
+    @Override
+    public <T, R> T reflectively(Method arg0, R arg1) {
+        return source().reflectively(arg0, arg1);
+    }
+
+    @Override
+    public <T> T reflectively(Method arg0) {
+        return source().reflectively(arg0);
+    }
+
+    @Override
+    public <T> T reflectively(Constructor<T> arg0) {
+        return source().reflectively(arg0);
+    }
+
+    @Override
+    public <T> T reflectively(Class<T> arg0) {
+        return source().reflectively(arg0);
+    }
+
+    @Override
+    public <T> T nullable(Generator<T> arg0) {
+        return source().nullable(arg0);
+    }
+
+    @Override
+    public void target(double arg0) {
+        source().target(arg0);
+    }
+
+    @Override
+    public Statement apply(Statement arg0, Description arg1) {
+        return source().apply(arg0, arg1);
+    }
+}
@@ -0,0 +1,21 @@
+package net.lfn3.undertaker.junit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Runs trials until either millis have passed or maxTrials trials have been run, whichever comes first.
+ * Shrinking a failure gets its own budget of shrinkMillis, 0 leaves shrinking unbounded.
+ * Putting this on the test class sets the budget for every test in it that doesn't have its own.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.METHOD, ElementType.TYPE})
+public @interface TimeBudget {
+    long millis();
+
+    long shrinkMillis() default 0;
+
+    long maxTrials() default Long.MAX_VALUE;
+}
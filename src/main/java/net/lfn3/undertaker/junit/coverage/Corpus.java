@@ -0,0 +1,60 @@
+package net.lfn3.undertaker.junit.coverage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The inputs a coverage guided run keeps, because they reached edges no input before them had. An input is a seed and a
+ * size, as a percentage of the default sizes. Varying an input means rerunning its seed at another size, which only
+ * changes anything if the input drew a collection, array or string of the default size. So only those inputs are
+ * picked to be varied.
+ */
+public final class Corpus {
+    private final int maxInputs;
+    private final List<Input> inputs = new ArrayList<>();
+    private final List<Input> variable = new ArrayList<>();
+
+    public Corpus(int maxInputs) {
+        this.maxInputs = maxInputs;
+    }
+
+    public static final class Input {
+        public final long seed;
+        public final double percent;
+
+        Input(long seed, double percent) {
+            this.seed = seed;
+            this.percent = percent;
+        }
+    }
+
+    /**
+     * Returns false if the corpus is already full.
+     */
+    public boolean add(long seed, double percent, boolean drewDefaultSizes) {
+        if (maxInputs <= inputs.size()) {
+            return false;
+        }
+        final Input input = new Input(seed, percent);
+        inputs.add(input);
+        if (drewDefaultSizes) {
+            variable.add(input);
+        }
+        return true;
+    }
+
+    /**
+     * Picks one of the inputs that can be varied, or returns null if there aren't any.
+     */
+    public Input pick(SplittableRandom random) {
+        if (variable.isEmpty()) {
+            return null;
+        }
+        return variable.get(random.nextInt(variable.size()));
+    }
+
+    public int size() {
+        return inputs.size();
+    }
+}
@@ -0,0 +1,29 @@
+package net.lfn3.undertaker.junit.coverage;
+
+import java.lang.instrument.Instrumentation;
+
+/**
+ * Instruments classes for @CoverageGuided tests. Pass the packages to instrument as the agent's arguments:
+ * -javaagent:undertaker-junit.jar=com.example.parser,com.example.protocol
+ */
+public final class CoverageAgent {
+    private CoverageAgent() {
+    }
+
+    public static void premain(String args, Instrumentation instrumentation) {
+        install(args, instrumentation);
+    }
+
+    public static void agentmain(String args, Instrumentation instrumentation) {
+        install(args, instrumentation);
+    }
+
+    private static void install(String args, Instrumentation instrumentation) {
+        if (args == null || args.trim().isEmpty()) {
+            System.err.println("The undertaker coverage agent wasn't given any packages to instrument, so it won't do anything.");
+            return;
+        }
+        instrumentation.addTransformer(new CoverageTransformer(args.split(",")));
+        CoverageProbes.installed();
+    }
+}
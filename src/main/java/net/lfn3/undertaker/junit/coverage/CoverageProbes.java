@@ -0,0 +1,73 @@
+package net.lfn3.undertaker.junit.coverage;
+
+/**
+ * Where instrumented code records the edges it takes. Each probe has a location, and an edge is recorded as the
+ * current location xor'd with the previous one, in the same way as AFL. Collisions are possible, so coverage is an
+ * estimate rather than an exact count.
+ * <p>
+ * Edges are only recorded on threads that have started tracing, each into its own map, so tests running at the same
+ * time don't see each other's coverage. Code the test hands off to other threads isn't traced.
+ */
+public final class CoverageProbes {
+    public static final int MAP_SIZE = 1 << 16;
+
+    private static final ThreadLocal<Trace> TRACE = new ThreadLocal<>();
+    private static volatile boolean installed;
+
+    private static final class Trace {
+        private final byte[] edges = new byte[MAP_SIZE];
+        private int previous;
+    }
+
+    private CoverageProbes() {
+    }
+
+    public static void hit(int location) {
+        final Trace trace = TRACE.get();
+        if (trace != null) {
+            trace.edges[(location ^ trace.previous) & (MAP_SIZE - 1)] = 1;
+            trace.previous = location >>> 1;
+        }
+    }
+
+    static void installed() {
+        installed = true;
+    }
+
+    public static boolean isInstalled() {
+        return installed;
+    }
+
+    public static void startTracing() {
+        TRACE.set(new Trace());
+    }
+
+    public static void stopTracing() {
+        TRACE.remove();
+    }
+
+    /**
+     * Adds the edges this thread has recorded since the last merge to seen, and returns how many of them it didn't
+     * already have.
+     */
+    public static int mergeNewEdges(boolean[] seen) {
+        final Trace trace = TRACE.get();
+        if (trace == null) {
+            return 0;
+        }
+
+        int newEdges = 0;
+        final byte[] edges = trace.edges;
+        for (int i = 0; i < MAP_SIZE; i++) {
+            if (edges[i] != 0) {
+                if (!seen[i]) {
+                    seen[i] = true;
+                    newEdges++;
+                }
+                edges[i] = 0;
+            }
+        }
+        trace.previous = 0;
+        return newEdges;
+    }
+}
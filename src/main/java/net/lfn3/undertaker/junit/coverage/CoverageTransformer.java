@@ -0,0 +1,117 @@
+package net.lfn3.undertaker.junit.coverage;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+
+/**
+ * Adds a probe at the start of each method, at each branch target (anywhere there's a stack map frame), and after
+ * each conditional jump. Only classes in the given packages are instrumented.
+ */
+final class CoverageTransformer implements ClassFileTransformer {
+    private static final String PROBES = "net/lfn3/undertaker/junit/coverage/CoverageProbes";
+
+    private final String[] prefixes;
+
+    CoverageTransformer(String[] packages) {
+        prefixes = new String[packages.length];
+        for (int i = 0; i < packages.length; i++) {
+            prefixes[i] = packages[i].trim().replace('.', '/') + "/";
+        }
+    }
+
+    @Override
+    public byte[] transform(ClassLoader loader,
+                            String className,
+                            Class<?> classBeingRedefined,
+                            ProtectionDomain protectionDomain,
+                            byte[] classfileBuffer) {
+        if (className == null || !shouldInstrument(className)) {
+            return null;
+        }
+
+        try {
+            final ClassReader reader = new ClassReader(classfileBuffer);
+            final ClassWriter writer = new ClassWriter(reader, ClassWriter.COMPUTE_MAXS);
+            reader.accept(new ProbeClassVisitor(writer, className), 0);
+            return writer.toByteArray();
+        } catch (RuntimeException e) {
+            //Left uninstrumented, but said out loud, since coverage would otherwise just quietly stop growing.
+            System.err.println("The undertaker coverage agent couldn't instrument " + className.replace('/', '.') +
+                    ", so it won't report coverage for it: " + e);
+            return null;
+        }
+    }
+
+    private boolean shouldInstrument(String className) {
+        for (String prefix : prefixes) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class ProbeClassVisitor extends ClassVisitor {
+        private final String className;
+
+        ProbeClassVisitor(ClassVisitor next, String className) {
+            super(Opcodes.ASM9, next);
+            this.className = className;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+            final MethodVisitor next = super.visitMethod(access, name, descriptor, signature, exceptions);
+            if ((access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_NATIVE)) != 0) {
+                return next;
+            }
+            return new ProbeMethodVisitor(next, (className + "." + name + descriptor).hashCode());
+        }
+    }
+
+    private static final class ProbeMethodVisitor extends MethodVisitor {
+        private final int methodId;
+        private int probes;
+
+        ProbeMethodVisitor(MethodVisitor next, int methodId) {
+            super(Opcodes.ASM9, next);
+            this.methodId = methodId;
+        }
+
+        @Override
+        public void visitCode() {
+            super.visitCode();
+            probe();
+        }
+
+        @Override
+        public void visitFrame(int type, int numLocal, Object[] local, int numStack, Object[] stack) {
+            super.visitFrame(type, numLocal, local, numStack, stack);
+            probe();
+        }
+
+        @Override
+        public void visitJumpInsn(int opcode, Label label) {
+            super.visitJumpInsn(opcode, label);
+            if (opcode != Opcodes.GOTO && opcode != Opcodes.JSR) {
+                probe();
+            }
+        }
+
+        private void probe() {
+            int location = methodId * 31 + probes++;
+            location ^= location >>> 16;
+            location *= 0x45d9f3b;
+            location ^= location >>> 16;
+            super.visitLdcInsn(location);
+            super.visitMethodInsn(Opcodes.INVOKESTATIC, PROBES, "hit", "(I)V", false);
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package net.lfn3.undertaker.junit.instrumentation;
+
+/**
+ * Called around every call into the Source made during a trial. Calls nest, since generators call back into the
+ * Source for their parts.
+ */
+public interface GenerationHook {
+    void enterGeneration();
+
+    void exitGeneration(Object generated);
+
+    /**
+     * Called instead of exitGeneration when the call into the Source threw.
+     */
+    default void generationFailed() {
+        exitGeneration(null);
+    }
+
+    static GenerationHook both(GenerationHook first, GenerationHook second) {
+        if (first == null) {
+            return second;
+        }
+        if (second == null) {
+            return first;
+        }
+        return new GenerationHook() {
+            @Override
+            public void enterGeneration() {
+                first.enterGeneration();
+                second.enterGeneration();
+            }
+
+            @Override
+            public void exitGeneration(Object generated) {
+                second.exitGeneration(generated);
+                first.exitGeneration(generated);
+            }
+
+            @Override
+            public void generationFailed() {
+                second.generationFailed();
+                first.generationFailed();
+            }
+        };
+    }
+}
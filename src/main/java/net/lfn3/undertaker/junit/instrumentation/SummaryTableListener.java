@@ -0,0 +1,60 @@
+package net.lfn3.undertaker.junit.instrumentation;
+
+import java.io.PrintStream;
+
+/**
+ * Prints a table showing where the time went at the end of each test.
+ */
+public class SummaryTableListener implements TrialListener {
+    private final PrintStream out;
+
+    public SummaryTableListener() {
+        this(System.out);
+    }
+
+    public SummaryTableListener(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void testFinished(TestStatistics test) {
+        final StringBuilder table = new StringBuilder();
+        table.append(String.format("%s ran %d trials%n", test.testName, test.trials));
+        table.append(String.format("%-14s %14s %14s%n", "", "total ms", "mean us/trial"));
+        row(table, "generation", test.generationNanos, test.trials);
+        row(table, "body", test.bodyNanos, test.trials);
+        row(table, "junit", test.junitNanos, test.trials);
+        row(table, "shrinking", test.shrinkNanos, test.trials);
+        table.append(String.format("%-14s %14d %14.1f%n", "outer calls", test.topLevelSourceCalls, perTrial(test.topLevelSourceCalls, test.trials)));
+        table.append(String.format("%-14s %14d %14.1f%n", "intervals", test.intervals, perTrial(test.intervals, test.trials)));
+        table.append(String.format("%-14s %14d%n", "shrink steps", test.shrinkSteps));
+
+        table.append("collection sizes:");
+        for (int bucket = 0; bucket < test.collectionSizeHistogram.length; bucket++) {
+            final long count = test.collectionSizeHistogram[bucket];
+            if (count != 0) {
+                table.append(String.format(" [%s]=%d", bucketLabel(bucket), count));
+            }
+        }
+        table.append(System.lineSeparator());
+
+        out.print(table);
+    }
+
+    private static void row(StringBuilder table, String name, long nanos, long trials) {
+        table.append(String.format("%-14s %14.1f %14.1f%n", name, nanos / 1e6, perTrial(nanos, trials) / 1e3));
+    }
+
+    private static double perTrial(long value, long trials) {
+        return trials == 0 ? 0 : (double) value / trials;
+    }
+
+    private static String bucketLabel(int bucket) {
+        if (bucket == 0) {
+            return "0";
+        }
+        final long lower = 1L << (bucket - 1);
+        final long upper = (1L << bucket) - 1;
+        return lower == upper ? Long.toString(lower) : lower + "-" + upper;
+    }
+}
@@ -0,0 +1,65 @@
+package net.lfn3.undertaker.junit.instrumentation;
+
+import java.util.List;
+
+/**
+ * Hands each trial's statistics to the listeners, and adds them up for the whole test.
+ * Trials can finish on several threads at once when running in parallel, so whether a trial was shrinking a failure is
+ * passed in by whoever ran it, rather than worked out from the trials that finished before it.
+ */
+public final class TestRecorder {
+    private final List<TrialListener> listeners;
+    private long trials;
+    private long generationNanos;
+    private long bodyNanos;
+    private long junitNanos;
+    private long topLevelSourceCalls;
+    private long intervals;
+    private long shrinkSteps;
+    private long shrinkNanos;
+    private final long[] collectionSizeHistogram = new long[33];
+
+    public TestRecorder(List<TrialListener> listeners) {
+        this.listeners = listeners;
+    }
+
+    public synchronized void trialFinished(TrialRecorder recorder, long trialNanos, boolean failed, boolean shrinking) {
+        final TrialStatistics trial = recorder.finish(trialNanos, failed, shrinking);
+
+        if (shrinking) {
+            shrinkSteps++;
+            shrinkNanos += trial.totalNanos();
+        } else {
+            trials++;
+            generationNanos += trial.generationNanos;
+            bodyNanos += trial.bodyNanos;
+            junitNanos += trial.junitNanos;
+            topLevelSourceCalls += trial.topLevelSourceCalls;
+            intervals += trial.intervals;
+            for (int size : trial.collectionSizes) {
+                collectionSizeHistogram[TestStatistics.bucketFor(size)]++;
+            }
+        }
+
+        for (TrialListener listener : listeners) {
+            listener.trialFinished(trial);
+        }
+    }
+
+    public synchronized void testFinished(String testName) {
+        final TestStatistics test = new TestStatistics(testName,
+                trials,
+                generationNanos,
+                bodyNanos,
+                junitNanos,
+                topLevelSourceCalls,
+                intervals,
+                shrinkSteps,
+                shrinkNanos,
+                collectionSizeHistogram.clone());
+
+        for (TrialListener listener : listeners) {
+            listener.testFinished(test);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package net.lfn3.undertaker.junit.instrumentation;
+
+/**
+ * Totals for every trial of a test. Shrinking is counted separately from the trials that found a failure.
+ * Collection sizes are bucketed by powers of two: bucket 0 holds empty collections, and bucket n holds collections
+ * with at least 2^(n-1) and fewer than 2^n elements. Source calls are counted as in {@link TrialStatistics}.
+ */
+public final class TestStatistics {
+    public final String testName;
+    public final long trials;
+    public final long generationNanos;
+    public final long bodyNanos;
+    public final long junitNanos;
+    public final long topLevelSourceCalls;
+    public final long intervals;
+    public final long shrinkSteps;
+    public final long shrinkNanos;
+    public final long[] collectionSizeHistogram;
+
+    public TestStatistics(String testName,
+                          long trials,
+                          long generationNanos,
+                          long bodyNanos,
+                          long junitNanos,
+                          long topLevelSourceCalls,
+                          long intervals,
+                          long shrinkSteps,
+                          long shrinkNanos,
+                          long[] collectionSizeHistogram) {
+        this.testName = testName;
+        this.trials = trials;
+        this.generationNanos = generationNanos;
+        this.bodyNanos = bodyNanos;
+        this.junitNanos = junitNanos;
+        this.topLevelSourceCalls = topLevelSourceCalls;
+        this.intervals = intervals;
+        this.shrinkSteps = shrinkSteps;
+        this.shrinkNanos = shrinkNanos;
+        this.collectionSizeHistogram = collectionSizeHistogram;
+    }
+
+    public static int bucketFor(int size) {
+        return 32 - Integer.numberOfLeadingZeros(size);
+    }
+}
@@ -0,0 +1,9 @@
+package net.lfn3.undertaker.junit.instrumentation;
+
+public interface TrialListener {
+    default void trialFinished(TrialStatistics trial) {
+    }
+
+    default void testFinished(TestStatistics test) {
+    }
+}
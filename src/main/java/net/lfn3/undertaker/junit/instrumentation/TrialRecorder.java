@@ -0,0 +1,82 @@
+package net.lfn3.undertaker.junit.instrumentation;
+
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Collects timings for a single trial, as it happens. Calls into the Source nest, so only time spent in the outermost
+ * call is counted as generation. Intervals are the ones the Source opens itself, for generate and pushInterval, and not
+ * the ones undertaker opens for each element of a collection.
+ */
+public final class TrialRecorder implements GenerationHook {
+    private int depth = 0;
+    private long generationStarted;
+    private long generationNanos;
+    private long bodyNanos;
+    private long topLevelSourceCalls;
+    private long intervals;
+    private int[] collectionSizes = new int[8];
+    private int collectionCount;
+
+    @Override
+    public void enterGeneration() {
+        if (depth++ == 0) {
+            topLevelSourceCalls++;
+            generationStarted = System.nanoTime();
+        }
+    }
+
+    @Override
+    public void exitGeneration(Object generated) {
+        if (--depth == 0) {
+            generationNanos += System.nanoTime() - generationStarted;
+        }
+
+        final int size = sizeOf(generated);
+        if (size >= 0) {
+            if (collectionCount == collectionSizes.length) {
+                collectionSizes = Arrays.copyOf(collectionSizes, collectionCount * 2);
+            }
+            collectionSizes[collectionCount++] = size;
+        }
+    }
+
+    public void recordInterval() {
+        intervals++;
+    }
+
+    public void recordBody(long nanos) {
+        bodyNanos += nanos;
+    }
+
+    public TrialStatistics finish(long trialNanos, boolean failed, boolean shrinking) {
+        final long bodyWithoutGeneration = Math.max(0, bodyNanos - generationNanos);
+        final long junitNanos = Math.max(0, trialNanos - bodyNanos);
+        return new TrialStatistics(generationNanos,
+                bodyWithoutGeneration,
+                junitNanos,
+                topLevelSourceCalls,
+                intervals,
+                Arrays.copyOf(collectionSizes, collectionCount),
+                failed,
+                shrinking);
+    }
+
+    private static int sizeOf(Object generated) {
+        if (generated instanceof Collection) {
+            return ((Collection<?>) generated).size();
+        }
+        if (generated instanceof Map) {
+            return ((Map<?, ?>) generated).size();
+        }
+        if (generated instanceof CharSequence) {
+            return ((CharSequence) generated).length();
+        }
+        if (generated != null && generated.getClass().isArray()) {
+            return Array.getLength(generated);
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,44 @@
+package net.lfn3.undertaker.junit.instrumentation;
+
+/**
+ * Where the time in a single trial went. Generation is time spent inside the Source, body is the rest of the time spent
+ * in the statement the SourceRule wraps: the test method, its @Before/@After methods and any rules applied inside the
+ * SourceRule. junit is everything else: creating the test instance, rules applied outside the SourceRule and the runner
+ * itself. Intervals counts the intervals the Source opened, which generateFlat and generateLeaf skip.
+ * <p>
+ * Top level source calls are the calls the test made to the Source itself, not counting the ones generators made
+ * inside them. It isn't the number of bytes undertaker drew: a single call can draw many, and undertaker makes draws
+ * of its own, like the one deciding if a collection has another element.
+ */
+public final class TrialStatistics {
+    public final long generationNanos;
+    public final long bodyNanos;
+    public final long junitNanos;
+    public final long topLevelSourceCalls;
+    public final long intervals;
+    public final int[] collectionSizes;
+    public final boolean failed;
+    public final boolean shrinking;
+
+    public TrialStatistics(long generationNanos,
+                           long bodyNanos,
+                           long junitNanos,
+                           long topLevelSourceCalls,
+                           long intervals,
+                           int[] collectionSizes,
+                           boolean failed,
+                           boolean shrinking) {
+        this.generationNanos = generationNanos;
+        this.bodyNanos = bodyNanos;
+        this.junitNanos = junitNanos;
+        this.topLevelSourceCalls = topLevelSourceCalls;
+        this.intervals = intervals;
+        this.collectionSizes = collectionSizes;
+        this.failed = failed;
+        this.shrinking = shrinking;
+    }
+
+    public long totalNanos() {
+        return generationNanos + bodyNanos + junitNanos;
+    }
+}
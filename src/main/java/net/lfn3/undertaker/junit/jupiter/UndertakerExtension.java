@@ -0,0 +1,83 @@
+package net.lfn3.undertaker.junit.jupiter;
+
+import clojure.java.api.Clojure;
+import clojure.lang.IFn;
+import net.lfn3.undertaker.junit.Parallel;
+import net.lfn3.undertaker.junit.Source;
+import net.lfn3.undertaker.junit.SourceRule;
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.api.extension.InvocationInterceptor;
+import org.junit.jupiter.api.extension.ParameterContext;
+import org.junit.jupiter.api.extension.ParameterResolver;
+import org.junit.jupiter.api.extension.ReflectiveInvocationContext;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+
+/**
+ * Runs each test method as a property: the method is called once per trial, with a Source passed to any parameter
+ * of that type. Trials run on the thread Jupiter runs the test on, without going back through the engine, so this
+ * works with junit.jupiter.execution.parallel.enabled. The annotations SourceRule understands (@Trials, @Seed,
+ * @TimeBudget and so on) work the same way here, apart from @InProcess, which doesn't apply.
+ * The test instance is shared between trials, and @BeforeEach and @AfterEach methods run once around all of them.
+ * Since the instance and the arguments are shared, @Parallel can't be used here.
+ */
+public class UndertakerExtension implements ParameterResolver, InvocationInterceptor {
+    private static final ExtensionContext.Namespace NAMESPACE = ExtensionContext.Namespace.create(UndertakerExtension.class);
+
+    @Override
+    public boolean supportsParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        return parameterContext.getParameter().getType().equals(Source.class);
+    }
+
+    @Override
+    public Object resolveParameter(ParameterContext parameterContext, ExtensionContext extensionContext) {
+        return extensionContext.getStore(NAMESPACE).getOrComputeIfAbsent(Source.class, k -> new SourceRule(), Source.class);
+    }
+
+    @Override
+    public void interceptTestMethod(Invocation<Void> invocation,
+                                    ReflectiveInvocationContext<Method> invocationContext,
+                                    ExtensionContext extensionContext) throws Throwable {
+        final Method method = invocationContext.getExecutable();
+        final Class<?> testClass = extensionContext.getRequiredTestClass();
+        final Object target = invocationContext.getTarget().orElse(null);
+        final Object[] arguments = invocationContext.getArguments().toArray();
+        method.setAccessible(true);
+
+        final Callable<Object> trial = () -> {
+            try {
+                return method.invoke(target, arguments);
+            } catch (InvocationTargetException e) {
+                throw rethrow(e.getCause());
+            }
+        };
+
+        try {
+            if (method.isAnnotationPresent(Parallel.class) || testClass.isAnnotationPresent(Parallel.class)) {
+                throw new ExtensionConfigurationException("@Parallel can't be used with UndertakerExtension, since " +
+                        "every trial of " + method.getName() + " shares one test instance and one set of arguments. " +
+                        "Use junit.jupiter.execution.parallel.enabled to run test methods at the same time instead.");
+            }
+            Property.RUN.invoke(method, testClass, trial);
+        } finally {
+            invocation.skip();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends Throwable> RuntimeException rethrow(Throwable t) throws T {
+        throw (T) t;
+    }
+
+    private static final class Property {
+        private static final IFn RUN = load();
+
+        private static IFn load() {
+            Clojure.var("clojure.core", "require").invoke(Clojure.read("net.lfn3.undertaker.junit.source-rule"));
+            return Clojure.var("net.lfn3.undertaker.junit.source-rule", "run-jupiter-property");
+        }
+    }
+}
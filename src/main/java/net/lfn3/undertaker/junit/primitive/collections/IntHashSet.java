@@ -0,0 +1,90 @@
+package net.lfn3.undertaker.junit.primitive.collections;
+
+import java.util.Arrays;
+
+/**
+ * An open addressing set of ints, so checking if we've already generated a value doesn't need to box it.
+ * 0 marks an empty slot, so whether 0 is in the set is tracked separately.
+ */
+public final class IntHashSet {
+    private int[] slots;
+    private int mask;
+    private int size;
+    private boolean containsZero;
+
+    public IntHashSet(int expectedSize) {
+        final int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        slots = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public boolean add(int value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+
+        int index = indexFor(value);
+        while (slots[index] != 0) {
+            if (slots[index] == value) {
+                return false;
+            }
+            index = (index + 1) & mask;
+        }
+        slots[index] = value;
+        size++;
+        if (size * 2 > slots.length) {
+            grow();
+        }
+        return true;
+    }
+
+    public boolean contains(int value) {
+        if (value == 0) {
+            return containsZero;
+        }
+
+        int index = indexFor(value);
+        while (slots[index] != 0) {
+            if (slots[index] == value) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(slots, 0);
+        size = 0;
+        containsZero = false;
+    }
+
+    private int indexFor(int value) {
+        final int h = value * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void grow() {
+        final int[] old = slots;
+        slots = new int[old.length * 2];
+        mask = slots.length - 1;
+        for (int value : old) {
+            if (value != 0) {
+                int index = indexFor(value);
+                while (slots[index] != 0) {
+                    index = (index + 1) & mask;
+                }
+                slots[index] = value;
+            }
+        }
+    }
+}
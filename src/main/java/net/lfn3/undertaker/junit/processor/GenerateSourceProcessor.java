@@ -0,0 +1,284 @@
+package net.lfn3.undertaker.junit.processor;
+
+import net.lfn3.undertaker.junit.GenerateSource;
+import net.lfn3.undertaker.junit.GeneratorRegistry;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.WildcardType;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Writes a Generator for each class with @GenerateSource, which calls its constructor with a nextX call for each
+ * parameter. Strings, primitives, their boxes and arrays, enums, and Lists, Sets and Maps of any of those get the
+ * matching Source method. Anything else is generated with source.reflectively, which uses the registered or
+ * generated generator for the class if there is one. Wildcards with a lower bound, like List<? super Integer>, don't
+ * say what to generate, so they're a compile error.
+ */
+@SupportedAnnotationTypes("net.lfn3.undertaker.junit.GenerateSource")
+public final class GenerateSourceProcessor extends AbstractProcessor {
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(GenerateSource.class)) {
+            final ExecutableElement constructor = constructorFor(element);
+            if (constructor != null && canBeGenerated((TypeElement) constructor.getEnclosingElement())) {
+                write((TypeElement) constructor.getEnclosingElement(), constructor);
+            }
+        }
+        return true;
+    }
+
+    private ExecutableElement constructorFor(Element element) {
+        if (element.getKind() == ElementKind.CONSTRUCTOR) {
+            if (element.getModifiers().contains(Modifier.PRIVATE)) {
+                error(element, "@GenerateSource can't be used on a private constructor");
+                return null;
+            }
+            return (ExecutableElement) element;
+        }
+        if (element.getKind() != ElementKind.CLASS) {
+            error(element, "@GenerateSource can only be used on classes and constructors");
+            return null;
+        }
+
+        final List<ExecutableElement> constructors = new ArrayList<>();
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(element.getEnclosedElements())) {
+            if (constructor.getAnnotation(GenerateSource.class) != null) {
+                return null; //It'll be written for the constructor instead.
+            }
+            if (constructor.getModifiers().contains(Modifier.PUBLIC)) {
+                constructors.add(constructor);
+            }
+        }
+        if (constructors.size() != 1) {
+            error(element, element.getSimpleName() + " has " + constructors.size() + " public constructors. " +
+                    "Put @GenerateSource on the one to use instead.");
+            return null;
+        }
+        return constructors.get(0);
+    }
+
+    private boolean canBeGenerated(TypeElement type) {
+        final Set<Modifier> modifiers = type.getModifiers();
+        if (modifiers.contains(Modifier.ABSTRACT) || modifiers.contains(Modifier.PRIVATE)) {
+            error(type, "@GenerateSource can't be used on abstract or private classes");
+            return false;
+        }
+        if (type.getEnclosingElement().getKind() != ElementKind.PACKAGE && !modifiers.contains(Modifier.STATIC)) {
+            error(type, "@GenerateSource can't be used on inner classes, only static nested ones");
+            return false;
+        }
+        if (!type.getTypeParameters().isEmpty()) {
+            error(type, "@GenerateSource can't be used on generic classes");
+            return false;
+        }
+        return true;
+    }
+
+    private void write(TypeElement type, ExecutableElement constructor) {
+        final String binaryName = processingEnv.getElementUtils().getBinaryName(type).toString();
+        final String generatorName = GeneratorRegistry.generatedGeneratorName(binaryName);
+        final int packageEnd = generatorName.lastIndexOf('.');
+        final String typeName = type.getQualifiedName().toString();
+
+        boolean canBeWritten = true;
+        for (VariableElement parameter : constructor.getParameters()) {
+            if (hasLowerBound(parameter.asType())) {
+                error(parameter, "@GenerateSource can't generate " + parameter.asType() + ", since a wildcard with " +
+                        "a lower bound doesn't say what to generate. Use an upper bound or a concrete type instead.");
+                canBeWritten = false;
+            }
+        }
+        if (!canBeWritten) {
+            return;
+        }
+
+        final List<String> arguments = new ArrayList<>();
+        for (VariableElement parameter : constructor.getParameters()) {
+            arguments.add(expression(parameter.asType(), "source", 0));
+        }
+
+        final StringBuilder source = new StringBuilder();
+        if (0 < packageEnd) {
+            source.append("package ").append(generatorName, 0, packageEnd).append(";\n\n");
+        }
+        source.append("/**\n")
+              .append(" * Written by GenerateSourceProcessor for ").append(typeName).append(".\n")
+              .append(" */\n")
+              .append("public final class ").append(generatorName.substring(packageEnd + 1))
+              .append(" implements net.lfn3.undertaker.junit.Generator<").append(typeName).append("> {\n")
+              .append("    @Override\n")
+              .append("    @SuppressWarnings(\"unchecked\")\n")
+              .append("    public ").append(typeName).append(" apply(net.lfn3.undertaker.junit.Source source) {\n")
+              .append("        return new ").append(typeName).append("(")
+              .append(String.join(",\n                ", arguments))
+              .append(");\n")
+              .append("    }\n")
+              .append("}\n");
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(generatorName, type).openWriter()) {
+            writer.write(source.toString());
+        } catch (IOException e) {
+            error(type, "Couldn't write " + generatorName + ": " + e.getMessage());
+        }
+    }
+
+    private String expression(TypeMirror type, String source, int depth) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return source + ".nextBool()";
+            case BYTE:
+                return source + ".nextByte()";
+            case SHORT:
+                return source + ".nextShort()";
+            case INT:
+                return source + ".nextInt()";
+            case LONG:
+                return source + ".nextLong()";
+            case CHAR:
+                return source + ".nextChar()";
+            case FLOAT:
+                return source + ".nextFloat()";
+            case DOUBLE:
+                return source + ".nextDouble()";
+            case ARRAY:
+                return arrayExpression(((ArrayType) type).getComponentType(), source, depth);
+            case WILDCARD:
+                final TypeMirror bound = ((WildcardType) type).getExtendsBound();
+                return bound == null ?
+                        source + ".reflectively(java.lang.Object.class)" :
+                        expression(bound, source, depth);
+            case DECLARED:
+                return declaredExpression((DeclaredType) type, source, depth);
+            default:
+                return "(" + castType(type) + ") " + source + ".reflectively(" + erasure(type) + ".class)";
+        }
+    }
+
+    private static boolean hasLowerBound(TypeMirror type) {
+        switch (type.getKind()) {
+            case ARRAY:
+                return hasLowerBound(((ArrayType) type).getComponentType());
+            case WILDCARD:
+                final WildcardType wildcard = (WildcardType) type;
+                return wildcard.getSuperBound() != null ||
+                        (wildcard.getExtendsBound() != null && hasLowerBound(wildcard.getExtendsBound()));
+            case DECLARED:
+                for (TypeMirror arg : ((DeclaredType) type).getTypeArguments()) {
+                    if (hasLowerBound(arg)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private String arrayExpression(TypeMirror component, String source, int depth) {
+        if (component.getKind().isPrimitive()) {
+            final String name = component.getKind().name();
+            return source + ".next" + name.charAt(0) + name.substring(1).toLowerCase() + "Array()";
+        }
+        return source + ".nextArray(" + erasure(component) + ".class, " + lambda(component, depth) + ")";
+    }
+
+    private String declaredExpression(DeclaredType type, String source, int depth) {
+        final String name = erasure(type);
+        final List<? extends TypeMirror> args = type.getTypeArguments();
+        if (isBox(type)) {
+            return expression(processingEnv.getTypeUtils().unboxedType(type), source, depth);
+        }
+        if (name.equals("java.lang.String")) {
+            return source + ".nextString()";
+        }
+        if (type.asElement().getKind() == ElementKind.ENUM) {
+            return source + ".nextEnum(" + name + ".class)";
+        }
+        if (name.equals("java.util.List") && args.size() == 1) {
+            return source + ".nextList(" + lambda(args.get(0), depth) + ")";
+        }
+        if (name.equals("java.util.Set") && args.size() == 1) {
+            return source + ".nextSet(" + lambda(args.get(0), depth) + ")";
+        }
+        if (name.equals("java.util.Map") && args.size() == 2) {
+            return source + ".nextMap(" + lambda(args.get(0), depth) + ", " + lambda(args.get(1), depth) + ")";
+        }
+        if (args.isEmpty()) {
+            return source + ".reflectively(" + name + ".class)";
+        }
+        return "(" + castType(type) + ") " + source + ".reflectively(" + name + ".class)";
+    }
+
+    //A constructor's own type parameters aren't in scope in the generator, so anything mentioning them is cast to its
+    //erasure instead, and the constructor call infers them from that.
+    private String castType(TypeMirror type) {
+        return hasTypeVariable(type) ? erasure(type) : type.toString();
+    }
+
+    private static boolean hasTypeVariable(TypeMirror type) {
+        switch (type.getKind()) {
+            case TYPEVAR:
+                return true;
+            case ARRAY:
+                return hasTypeVariable(((ArrayType) type).getComponentType());
+            case WILDCARD:
+                final WildcardType wildcard = (WildcardType) type;
+                return wildcard.getExtendsBound() != null && hasTypeVariable(wildcard.getExtendsBound());
+            case DECLARED:
+                for (TypeMirror arg : ((DeclaredType) type).getTypeArguments()) {
+                    if (hasTypeVariable(arg)) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private String lambda(TypeMirror type, int depth) {
+        final String source = "s" + (depth + 1);
+        return source + " -> " + expression(type, source, depth + 1);
+    }
+
+    private boolean isBox(DeclaredType type) {
+        try {
+            processingEnv.getTypeUtils().unboxedType(type);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
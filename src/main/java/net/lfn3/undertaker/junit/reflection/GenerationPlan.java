@@ -0,0 +1,112 @@
+package net.lfn3.undertaker.junit.reflection;
+
+import net.lfn3.undertaker.junit.GeneratorRegistry;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Everything we need to know to reflectively generate a class, worked out once per class.
+ * The candidates are the public constructors, followed by the public static methods that return the class,
+ * leaving out any that take the class itself as a parameter.
+ * Their method handles are only looked up once a candidate is chosen, so one we can't access doesn't stop the others
+ * being used.
+ */
+public final class GenerationPlan {
+    private static final ClassValue<GenerationPlan> PLANS = new ClassValue<GenerationPlan>() {
+        @Override
+        protected GenerationPlan computeValue(Class<?> type) {
+            return new GenerationPlan(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final List<Invoker> candidates;
+    private final boolean anyCandidateTakesAnInterface;
+    private final ConcurrentMap<Executable, Invoker> invokers = new ConcurrentHashMap<>();
+
+    private GenerationPlan(Class<?> type) {
+        this.type = type;
+
+        final List<Invoker> candidates = new ArrayList<>();
+        for (Constructor<?> constructor : type.getConstructors()) {
+            if (doesNotTakeItself(constructor)) {
+                candidates.add(invoker(constructor));
+            }
+        }
+        for (Method method : type.getMethods()) {
+            if (Modifier.isStatic(method.getModifiers()) &&
+                    method.getReturnType().equals(type) &&
+                    doesNotTakeItself(method)) {
+                candidates.add(invoker(method));
+            }
+        }
+        this.candidates = Collections.unmodifiableList(candidates);
+        this.anyCandidateTakesAnInterface = candidates.stream().anyMatch(GenerationPlan::takesAnInterface);
+    }
+
+    public static GenerationPlan forClass(Class<?> type) {
+        return PLANS.get(type);
+    }
+
+    public static Invoker invokerFor(Executable executable) {
+        return forClass(executable.getDeclaringClass()).invoker(executable);
+    }
+
+    public Invoker invoker(Executable executable) {
+        return invokers.computeIfAbsent(executable, Invoker::of);
+    }
+
+    /**
+     * Candidates that take an interface can only be used if there's a generator for that interface.
+     */
+    public List<Invoker> usableCandidates(GeneratorRegistry<?> registry, Map<?, ?> genericClassToGenerator) {
+        if (!anyCandidateTakesAnInterface) {
+            return candidates;
+        }
+
+        final List<Invoker> usable = new ArrayList<>(candidates.size());
+        for (Invoker candidate : candidates) {
+            if (canGenerateParametersOf(candidate, registry, genericClassToGenerator)) {
+                usable.add(candidate);
+            }
+        }
+        return usable;
+    }
+
+    private boolean doesNotTakeItself(Executable executable) {
+        for (Class<?> parameterType : executable.getParameterTypes()) {
+            if (parameterType.equals(type)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean takesAnInterface(Invoker invoker) {
+        for (Class<?> parameterType : invoker.parameterTypes()) {
+            if (parameterType.isInterface()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean canGenerateParametersOf(Invoker invoker,
+                                                   GeneratorRegistry<?> registry,
+                                                   Map<?, ?> genericClassToGenerator) {
+        for (Class<?> parameterType : invoker.parameterTypes()) {
+            if (parameterType.isInterface() &&
+                    !registry.contains(parameterType) &&
+                    !genericClassToGenerator.containsKey(parameterType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
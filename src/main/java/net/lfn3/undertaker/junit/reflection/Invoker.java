@@ -0,0 +1,106 @@
+package net.lfn3.undertaker.junit.reflection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+
+/**
+ * A constructor or method, along with a method handle that takes its arguments as an Object[].
+ * Looking up the handle is expensive, and can fail for candidates we can't access, so it's only done the first time
+ * the invoker is used and then kept. The invokers themselves are cached in {@link GenerationPlan}.
+ */
+public final class Invoker {
+    private final Executable executable;
+    private final Class<?>[] parameterTypes;
+    private final Type[] genericParameterTypes;
+    private final boolean hasReceiver;
+    private volatile MethodHandle handle;
+
+    private Invoker(Executable executable) {
+        this.executable = executable;
+        this.parameterTypes = executable.getParameterTypes();
+        final Type[] genericParameterTypes = executable.getGenericParameterTypes();
+        //Constructors of inner classes can leave the enclosing instance out of their generic parameter types.
+        this.genericParameterTypes = genericParameterTypes.length == parameterTypes.length ?
+                genericParameterTypes :
+                parameterTypes;
+        this.hasReceiver = executable instanceof Method && !Modifier.isStatic(executable.getModifiers());
+    }
+
+    static Invoker of(Executable executable) {
+        return new Invoker(executable);
+    }
+
+    private MethodHandle handle() {
+        MethodHandle handle = this.handle;
+        if (handle == null) {
+            final MethodHandle unspread = unreflect(executable);
+            handle = unspread.asType(unspread.type().generic()).asSpreader(Object[].class, parameterTypes.length);
+            this.handle = handle;
+        }
+        return handle;
+    }
+
+    private static MethodHandle unreflect(Executable executable) {
+        try {
+            return unreflect(MethodHandles.publicLookup(), executable);
+        } catch (IllegalAccessException e) {
+            makeAccessible(executable);
+            try {
+                return unreflect(MethodHandles.lookup(), executable);
+            } catch (IllegalAccessException stillInaccessible) {
+                throw new IllegalArgumentException("Could not access " + executable, stillInaccessible);
+            }
+        }
+    }
+
+    private static MethodHandle unreflect(MethodHandles.Lookup lookup, Executable executable)
+            throws IllegalAccessException {
+        return executable instanceof Constructor ?
+                lookup.unreflectConstructor((Constructor<?>) executable) :
+                lookup.unreflect((Method) executable);
+    }
+
+    //On Java 9+ this throws InaccessibleObjectException when the declaring package isn't opened to us.
+    //That's caught as a RuntimeException so this still compiles against Java 8.
+    private static void makeAccessible(Executable executable) {
+        try {
+            executable.setAccessible(true);
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Could not access " + executable + ". If it's in a named module, " +
+                    "make it public or open the package of " + executable.getDeclaringClass().getName() +
+                    " to undertaker-junit, e.g. with --add-opens.", e);
+        }
+    }
+
+    public Executable executable() {
+        return executable;
+    }
+
+    public boolean isConstructor() {
+        return executable instanceof Constructor;
+    }
+
+    public Class<?>[] parameterTypes() {
+        return parameterTypes;
+    }
+
+    public Type[] genericParameterTypes() {
+        return genericParameterTypes;
+    }
+
+    /**
+     * The receiver is ignored for constructors and static methods.
+     */
+    public Object invoke(Object receiver, Object[] args) throws Throwable {
+        final MethodHandle handle = handle();
+        if (hasReceiver) {
+            return (Object) handle.invokeExact(receiver, args);
+        }
+        return (Object) handle.invokeExact(args);
+    }
+}
@@ -0,0 +1,26 @@
+package net.lfn3.undertaker.junit.sources;
+
+import net.lfn3.undertaker.junit.Source;
+
+import java.util.function.ToIntFunction;
+
+public interface DistinctIntArraySource {
+    default int[] nextDistinctIntArray()
+    {
+        return nextDistinctIntArray(IntSource::nextInt);
+    }
+    default int[] nextDistinctIntArray(ToIntFunction<Source> generator)
+    {
+        return nextDistinctIntArray(generator, 0, 64);
+    }
+    default int[] nextDistinctIntArray(ToIntFunction<Source> generator, int size)
+    {
+        return nextDistinctIntArray(generator, size, size);
+    }
+    int[] nextDistinctIntArray(ToIntFunction<Source> generator, int minSize, int maxSize);
+    default int[] nextSortedDistinctIntArray(ToIntFunction<Source> generator)
+    {
+        return nextSortedDistinctIntArray(generator, 0, 64);
+    }
+    int[] nextSortedDistinctIntArray(ToIntFunction<Source> generator, int minSize, int maxSize);
+}
@@ -0,0 +1,26 @@
+package net.lfn3.undertaker.junit.sources;
+
+import net.lfn3.undertaker.junit.Source;
+
+import java.util.function.ToLongFunction;
+
+public interface DistinctLongArraySource {
+    default long[] nextDistinctLongArray()
+    {
+        return nextDistinctLongArray(LongSource::nextLong);
+    }
+    default long[] nextDistinctLongArray(ToLongFunction<Source> generator)
+    {
+        return nextDistinctLongArray(generator, 0, 64);
+    }
+    default long[] nextDistinctLongArray(ToLongFunction<Source> generator, int size)
+    {
+        return nextDistinctLongArray(generator, size, size);
+    }
+    long[] nextDistinctLongArray(ToLongFunction<Source> generator, int minSize, int maxSize);
+    default long[] nextSortedDistinctLongArray(ToLongFunction<Source> generator)
+    {
+        return nextSortedDistinctLongArray(generator, 0, 64);
+    }
+    long[] nextSortedDistinctLongArray(ToLongFunction<Source> generator, int minSize, int maxSize);
+}
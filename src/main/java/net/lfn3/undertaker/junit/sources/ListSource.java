@@ -3,6 +3,7 @@ package net.lfn3.undertaker.junit.sources;
 import net.lfn3.undertaker.junit.Generator;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface ListSource
 {
@@ -15,4 +16,20 @@ public interface ListSource
     }
 
     <T> List<T> nextList(Generator<T> generator, int min, int max);
+
+    /**
+     * Elements are only generated as the stream is consumed, so the elements themselves never have to fit in memory
+     * all at once. Everything drawn for them is still kept until the end of the trial though, along with an interval
+     * per element, so memory use still grows with the number of elements consumed.
+     * It has to be consumed during the trial it was generated in, on the same thread, so it can't be made parallel.
+     */
+    default <T> Stream<T> nextStream(Generator<T> generator) {
+        return nextStream(generator, 0, 64);
+    }
+
+    default <T> Stream<T> nextStream(Generator<T> generator, int size) {
+        return nextStream(generator, size, size);
+    }
+
+    <T> Stream<T> nextStream(Generator<T> generator, int min, int max);
 }
@@ -16,4 +16,18 @@ public interface ObjectSource {
     {
         return this.generate(asGenerator(f));
     }
+
+    /**
+     * Generates the value without giving it, or anything generated inside it, an interval of its own. That includes
+     * calls to generate and pushInterval/popInterval. Its draws belong to the enclosing interval instead.
+     */
+    <T> T generateFlat(Generator<T> generator);
+
+    /**
+     * Gives the value one interval, like generate, but nothing generated inside it gets one. So it still shows up in
+     * the output, but only the value as a whole can be shrunk away.
+     */
+    <T> T generateLeaf(Generator<T> generator);
+
+    <T> T generateLeaf(Class<T> aClass);
 }
@@ -0,0 +1,9 @@
+package net.lfn3.undertaker.junit.sources;
+
+public interface TargetSource {
+    /**
+     * Scores the current trial for tests with @Maximize(metric = TARGET). If it's called more than once in a trial,
+     * the highest score counts. Otherwise it does nothing.
+     */
+    void target(double score);
+}
@@ -0,0 +1,111 @@
+package net.lfn3.undertaker.junit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class CandidateCacheTest {
+    private static void hand(CandidateCache.Candidate candidate, Object... values) {
+        for (Object value : values) {
+            candidate.enterGeneration();
+            candidate.exitGeneration(value);
+        }
+    }
+
+    private static CandidateCache.Outcome repeatOf(CandidateCache cache, Object... values) {
+        final CandidateCache.Candidate candidate = cache.candidate();
+        try {
+            hand(candidate, values);
+        } catch (CandidateCache.Repeat expected) {
+            Assert.assertNotNull(candidate.repeated());
+        }
+        candidate.finished(null);
+        return candidate.repeated();
+    }
+
+    @Test
+    public void cutsShortCandidatesHandedTheSameValues() {
+        final CandidateCache cache = new CandidateCache();
+        final AssertionError failure = new AssertionError();
+        final CandidateCache.Candidate first = cache.candidate();
+        hand(first, 1, "two", new int[]{3}, Arrays.asList(4L, 5L));
+        first.finished(failure);
+
+        final CandidateCache.Outcome repeated = repeatOf(cache, 1, "two", new int[]{3}, Arrays.asList(4L, 5L));
+        Assert.assertNotNull(repeated);
+        Assert.assertSame(failure, repeated.failure);
+        Assert.assertEquals(2, cache.candidates());
+        Assert.assertEquals(1, cache.repeats());
+    }
+
+    @Test
+    public void onlyCutsShortOnceTheEarlierCandidateWouldHaveFinished() {
+        final CandidateCache cache = new CandidateCache();
+        final CandidateCache.Candidate first = cache.candidate();
+        hand(first, 1, 2);
+        first.finished(null);
+
+        final CandidateCache.Candidate second = cache.candidate();
+        hand(second, 1);
+        Assert.assertNull(second.repeated());
+        try {
+            hand(second, 2, 3);
+            Assert.fail("Should have been cut short");
+        } catch (CandidateCache.Repeat expected) {
+            Assert.assertNotNull(second.repeated());
+        }
+    }
+
+    @Test
+    public void doesNotCutShortCandidatesHandedDifferentValues() {
+        final CandidateCache cache = new CandidateCache();
+        final CandidateCache.Candidate first = cache.candidate();
+        hand(first, 1, "two", 3.0);
+        first.finished(null);
+
+        Assert.assertNull(repeatOf(cache, 1, "two", 4.0));
+        Assert.assertNull(repeatOf(cache, 1L, "two", 3.0));
+        Assert.assertNull(repeatOf(cache, 1, "twO", 3.0));
+        Assert.assertNull(repeatOf(cache, 1, "two", 3.0f));
+        Assert.assertEquals(0, cache.repeats());
+    }
+
+    @Test
+    public void doesNotRememberCandidatesHandedValuesItCannotCompare() {
+        final CandidateCache cache = new CandidateCache();
+        final CandidateCache.Candidate first = cache.candidate();
+        hand(first, 1, new Object());
+        first.finished(null);
+
+        Assert.assertNull(repeatOf(cache, 1, new Object()));
+        Assert.assertNull(repeatOf(cache, 1, Collections.singletonList(new Object())));
+    }
+
+    @Test
+    public void doesNotRememberCandidatesWhereGenerationFailed() {
+        final CandidateCache cache = new CandidateCache();
+        final CandidateCache.Candidate first = cache.candidate();
+        first.enterGeneration();
+        first.generationFailed();
+        hand(first, 1);
+        first.finished(null);
+
+        Assert.assertNull(repeatOf(cache, 1));
+    }
+
+    @Test
+    public void onlyKeepsTheMostRecentlyUsedCandidates() {
+        final CandidateCache cache = new CandidateCache(1);
+        final CandidateCache.Candidate first = cache.candidate();
+        hand(first, 1);
+        first.finished(null);
+        final CandidateCache.Candidate second = cache.candidate();
+        hand(second, 2);
+        second.finished(null);
+
+        Assert.assertNotNull(repeatOf(cache, 2));
+        Assert.assertNull(repeatOf(cache, 1));
+    }
+}
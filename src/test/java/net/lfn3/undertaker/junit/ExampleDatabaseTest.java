@@ -0,0 +1,47 @@
+package net.lfn3.undertaker.junit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.List;
+
+public class ExampleDatabaseTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void canSaveAndReadBackExamples() throws Exception {
+        final ExampleDatabase examples = new ExampleDatabase(folder.getRoot().toPath());
+        examples.save("a.Test", "aMethod", 1234567L, 12L, 1.0);
+        examples.save("a.Test", "aMethod", 7654321L, 1L, 0.25);
+
+        final List<ExampleDatabase.Example> saved = examples.examples("a.Test", "aMethod");
+        Assert.assertEquals(2, saved.size());
+        Assert.assertEquals(7654321L, saved.get(0).seed);
+        Assert.assertEquals(1L, saved.get(0).trials);
+        Assert.assertEquals(0.25, saved.get(0).scale, 0.0);
+        Assert.assertEquals(1234567L, saved.get(1).seed);
+        Assert.assertEquals(12L, saved.get(1).trials);
+        Assert.assertEquals(1.0, saved.get(1).scale, 0.0);
+
+        Assert.assertTrue(examples.examples("a.Test", "anotherMethod").isEmpty());
+    }
+
+    @Test
+    public void removesExamples() throws Exception {
+        final ExampleDatabase examples = new ExampleDatabase(folder.getRoot().toPath());
+        examples.save("a.Test", "aMethod", 1234567L, 1L, 1.0);
+        examples.save("a.Test", "aMethod", 1234567L, 1L, 1.0);
+        Assert.assertEquals(1, examples.examples("a.Test", "aMethod").size());
+
+        examples.remove("a.Test", "aMethod", 1234567L);
+        Assert.assertTrue(examples.examples("a.Test", "aMethod").isEmpty());
+    }
+
+    @Test
+    public void testsShareADatabase() {
+        Assert.assertSame(ExampleDatabase.fromSystemProperties(), ExampleDatabase.fromSystemProperties());
+    }
+}
@@ -0,0 +1,55 @@
+package net.lfn3.undertaker.junit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@InProcess(true)
+public class InProcessSourceRuleTest {
+    private int clearedBefore;
+    private boolean afterRan;
+    private List<Long> aList = new ArrayList<>();
+
+    @Rule
+    public Source source = new SourceRule();
+
+    @Before
+    public void before() {
+        clearedBefore = 0;
+    }
+
+    @After
+    public void after() {
+        Assert.assertFalse(afterRan);
+        afterRan = true;
+    }
+
+    @Test
+    public void beforeRunsWithEveryIteration() {
+        Assert.assertEquals(0, clearedBefore);
+        clearedBefore = source.nextInt();
+    }
+
+    @Test
+    public void runsOnANewlyInstansiatedClass() {
+        Assert.assertEquals(0, aList.size());
+        aList.add(source.nextLong());
+    }
+
+    @Test(expected = AssertionError.class)
+    public void canFail() {
+        Assert.assertTrue(false);
+    }
+
+    @Test
+    @Seed(1234567)
+    @Trials(1)
+    public void annotationsWork() {
+        Assert.assertEquals(-1921583219793701470L, source.nextLong());
+    }
+}
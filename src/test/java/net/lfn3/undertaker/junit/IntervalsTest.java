@@ -0,0 +1,115 @@
+package net.lfn3.undertaker.junit;
+
+import net.lfn3.undertaker.junit.instrumentation.TestStatistics;
+import net.lfn3.undertaker.junit.instrumentation.TrialListener;
+import net.lfn3.undertaker.junit.sources.IntSource;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public class IntervalsTest {
+    private static final int TRIALS = 10;
+    private static final Map<String, TestStatistics> STATISTICS = new ConcurrentHashMap<>();
+
+    @Rule
+    public Source source = new SourceRule();
+
+    @BeforeClass
+    public static void runFixtures() {
+        final Result result = JUnitCore.runClasses(Nested.class);
+        Assert.assertTrue(result.getFailures().toString(), result.wasSuccessful());
+    }
+
+    @Test
+    @Trials(1)
+    public void countsTheIntervalsTheSourceOpens() {
+        Assert.assertEquals(4 * TRIALS, STATISTICS.get("nested").intervals);
+    }
+
+    @Test
+    @Trials(1)
+    public void generateFlatOpensNoIntervals() {
+        Assert.assertEquals(0, STATISTICS.get("flat").intervals);
+    }
+
+    @Test
+    @Trials(1)
+    public void generateLeafOnlyOpensItsOwnInterval() {
+        Assert.assertEquals(TRIALS, STATISTICS.get("leaf").intervals);
+        Assert.assertEquals(TRIALS, STATISTICS.get("leafClass").intervals);
+    }
+
+    @Test
+    @Trials(1)
+    public void onlyCountsTheCallsTheTestMade() {
+        Assert.assertEquals(TRIALS, STATISTICS.get("nested").topLevelSourceCalls);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void flatGeneratorsCannotPopWhatTheyDidNotPush() {
+        source.generateFlat(s -> {
+            s.popInterval(null);
+            return null;
+        });
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void flatGeneratorsHaveToPopWhatTheyPush() {
+        source.generateLeaf(s -> {
+            s.pushInterval();
+            return s.nextInt();
+        });
+    }
+
+    public static class Capture implements TrialListener {
+        @Override
+        public void testFinished(TestStatistics test) {
+            STATISTICS.put(test.testName, test);
+        }
+    }
+
+    //Generating NESTED opens four intervals: one for the call to generate, one for pushInterval, and one for each of
+    //the two calls to generate inside it.
+    @Listeners(Capture.class)
+    public static class Nested {
+        private static final Generator<Integer> NESTED = s -> {
+            s.pushInterval();
+            final int generated = s.generate(s1 -> s1.generate(IntSource::nextInt));
+            s.popInterval(generated);
+            return generated;
+        };
+
+        @Rule
+        public Source source = new SourceRule();
+
+        @Test
+        @Trials(TRIALS)
+        public void nested() {
+            source.generate(NESTED);
+        }
+
+        @Test
+        @Trials(TRIALS)
+        public void flat() {
+            source.generateFlat(NESTED);
+        }
+
+        @Test
+        @Trials(TRIALS)
+        public void leaf() {
+            source.generateLeaf(NESTED);
+        }
+
+        @Test
+        @Trials(TRIALS)
+        public void leafClass() {
+            source.generateLeaf(Integer.class);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package net.lfn3.undertaker.junit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class MaximizeTest {
+    private static final int TRIALS = 200;
+
+    @Test
+    public void findsAndShrinksTheHighestScore() throws Exception {
+        final String printed = runPrintingTo(CappedTarget.class);
+
+        Assert.assertTrue(printed, printed.contains("scored 20.0 at worst"));
+        Assert.assertTrue(printed, printed.contains("The simplest input that scored at least as high scored 20.0:"));
+    }
+
+    @Test
+    public void candidatesThatThrowDoNotReachTheScore() throws Exception {
+        final String printed = runPrintingTo(ThrowsWhileShrinking.class);
+
+        Assert.assertTrue(printed, printed.contains("scored 20.0 at worst"));
+        Assert.assertTrue(printed, printed.contains("The simplest input that scored at least as high scored 20.0:"));
+    }
+
+    private static String runPrintingTo(Class<?> testClass) throws UnsupportedEncodingException {
+        final PrintStream out = System.out;
+        final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+        final Result result;
+        try {
+            System.setOut(new PrintStream(captured, true, StandardCharsets.UTF_8.name()));
+            result = JUnitCore.runClasses(testClass);
+        } finally {
+            System.setOut(out);
+        }
+        Assert.assertTrue(result.getFailures().toString(), result.wasSuccessful());
+        return new String(captured.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    //Any int from 20 up scores the most, so a search that keeps the highest score has to find one of those.
+    public static class CappedTarget {
+        @Rule
+        public Source source = new SourceRule();
+
+        @Test
+        @Trials(TRIALS)
+        @Maximize(metric = Maximize.Metric.TARGET)
+        public void capped() {
+            source.target(Math.min(source.nextInt(0, 1000), 20));
+        }
+    }
+
+    //Once the search is done, the best input is run again to start shrinking it. After that, every smaller candidate
+    //that would reach its score throws instead, so the best input is the simplest one that scored as high.
+    public static class ThrowsWhileShrinking {
+        private static final AtomicInteger CALLS = new AtomicInteger();
+        private static volatile int best;
+
+        @Rule
+        public Source source = new SourceRule();
+
+        @Test
+        @Trials(TRIALS)
+        @Maximize(metric = Maximize.Metric.TARGET)
+        public void capped() {
+            final int value = source.nextInt(0, 1000);
+            final int call = CALLS.incrementAndGet();
+            if (call == TRIALS + 1) {
+                best = value;
+            } else if (TRIALS + 1 < call && 20 <= value && value < best) {
+                throw new IllegalStateException("Not a score");
+            }
+            source.target(Math.min(value, 20));
+        }
+    }
+}
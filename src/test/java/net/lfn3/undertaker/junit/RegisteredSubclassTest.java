@@ -0,0 +1,41 @@
+package net.lfn3.undertaker.junit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.*;
+
+public class RegisteredSubclassTest {
+    private static final List<String> REGISTERED = Collections.singletonList("registered");
+    private static final Map<Class, Generator> GENERATORS = new HashMap<>();
+
+    static {
+        GENERATORS.put(ArrayList.class, s -> new ArrayList<>(REGISTERED));
+    }
+
+    @Rule
+    public Source source = new SourceRule(GENERATORS);
+
+    @Test
+    public void usesTheGenericGeneratorForParameterizedTypes() {
+        final WithListOfIntegers withList = source.reflectively(WithListOfIntegers.class);
+
+        for (Object element : withList.ints) {
+            Assert.assertTrue(element instanceof Integer);
+        }
+    }
+
+    @Test
+    public void usesTheRegisteredSubclassForRawTypes() {
+        Assert.assertEquals(REGISTERED, source.reflectively(List.class));
+    }
+
+    public static class WithListOfIntegers {
+        final List<Integer> ints;
+
+        public WithListOfIntegers(List<Integer> ints) {
+            this.ints = ints;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package net.lfn3.undertaker.junit;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+
+import java.nio.file.Paths;
+
+public class ShardsTest {
+    @Test
+    public void shardsRunEveryTrialOnce() {
+        final int count = 3;
+        final boolean[] ran = new boolean[10];
+        for (int index = 0; index < count; index++) {
+            final Shards shards = new Shards(index, count, Paths.get("shards"));
+            for (long n = 0; n < shards.trials(ran.length); n++) {
+                final int trial = (int) shards.trialIndex(n);
+                Assert.assertFalse(ran[trial]);
+                ran[trial] = true;
+            }
+        }
+        for (boolean trialRan : ran) {
+            Assert.assertTrue(trialRan);
+        }
+    }
+
+    @Test
+    public void shardsCanHaveNoTrials() {
+        Assert.assertEquals(0, new Shards(4, 5, Paths.get("shards")).trials(3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void indexMustBeLessThanCount() {
+        new Shards(2, 2, Paths.get("shards"));
+    }
+
+    @Test
+    public void refusesToShardMaximizedTests() {
+        System.setProperty(Shards.COUNT_PROPERTY, "2");
+        System.setProperty(Shards.SEED_PROPERTY, "1");
+        final Result result;
+        try {
+            result = JUnitCore.runClasses(MaximizedProperty.class);
+        } finally {
+            System.clearProperty(Shards.COUNT_PROPERTY);
+            System.clearProperty(Shards.SEED_PROPERTY);
+        }
+
+        Assert.assertEquals(1, result.getFailureCount());
+        Assert.assertTrue(result.getFailures().get(0).getException() instanceof IllegalStateException);
+    }
+
+    public static class MaximizedProperty {
+        @Rule
+        public Source source = new SourceRule();
+
+        @Test
+        @Maximize(metric = Maximize.Metric.TARGET)
+        public void maximized() {
+            source.target(source.nextInt());
+        }
+    }
+}
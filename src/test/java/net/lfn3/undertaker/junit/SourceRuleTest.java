@@ -1,6 +1,7 @@
 package net.lfn3.undertaker.junit;
 
 import net.lfn3.undertaker.junit.generators.CodePoints;
+import net.lfn3.undertaker.junit.instrumentation.SummaryTableListener;
 import net.lfn3.undertaker.junit.primitive.functions.ToByteFunction;
 import net.lfn3.undertaker.junit.sources.*;
 import org.junit.Assert;
@@ -12,6 +13,7 @@ import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class SourceRuleTest {
     private static final Generator<Date> DATE_GENERATOR = s -> Date.from(Instant.ofEpochSecond(s.nextInt(0, Integer.MAX_VALUE)));
@@ -20,6 +22,7 @@ public class SourceRuleTest {
     private int clearedBefore;
     private List<Long> aList = new ArrayList<>();
     private static final Map<Class, Generator> GENERATORS = new HashMap<>();
+    private static final AtomicInteger BUDGETED_TRIALS = new AtomicInteger();
 
     static {
         GENERATORS.put(GeneratorMapTestClass.class, s -> new GeneratorMapTestClass("Hello!"));
@@ -98,6 +101,29 @@ public class SourceRuleTest {
         Assert.assertTrue(inRange <= 12);
     }
 
+    @Test
+    public void canGetAStream() {
+        final long count = source.nextStream(SourceRuleTest.GENERATE_DATE).count();
+        Assert.assertTrue(count <= 64);
+
+        final long fixedSize = source.nextStream(IntSource::nextInt, 5).count();
+        Assert.assertEquals(5, fixedSize);
+
+        final Iterator<Byte> bytes = source.nextStream(ByteSource::nextByte, 1, 1000000).iterator();
+        Assert.assertTrue(bytes.hasNext());
+        Assert.assertNotNull(bytes.next());
+    }
+
+    @Test
+    @SizeRamp(fromPercent = 10, trials = 0)
+    public void canScaleDefaultSizes() {
+        Assert.assertTrue(source.nextList(IntSource::nextInt).size() <= 7);
+        Assert.assertEquals(20, source.nextList(IntSource::nextInt, 20).size());
+        Assert.assertTrue(source.nextIntArray().length <= 7);
+        Assert.assertTrue(source.nextArray(Integer.class, IntSource::nextInt).length <= 7);
+        Assert.assertTrue(source.nextStream(IntSource::nextInt).count() <= 7);
+    }
+
     @Test
     public void canGetAList() {
         final List<Date> list = source.nextList(SourceRuleTest.GENERATE_DATE);
@@ -112,6 +138,19 @@ public class SourceRuleTest {
         Assert.assertTrue(aListAOfBytes.size() <= 10);
     }
 
+    @Test
+    public void canGetDistinctPrimitiveArrays() {
+        final int[] ints = source.nextDistinctIntArray(s -> s.nextInt(0, 1000), 10, 100);
+        Assert.assertTrue(10 <= ints.length);
+        Assert.assertEquals(ints.length, Arrays.stream(ints).distinct().count());
+
+        final long[] longs = source.nextSortedDistinctLongArray(s -> s.nextLong(0, 50), 5, 20);
+        Assert.assertTrue(5 <= longs.length);
+        for (int i = 1; i < longs.length; i++) {
+            Assert.assertTrue(longs[i - 1] < longs[i]);
+        }
+    }
+
     @Test
     public void canGetAnArray() {
         final Date[] anArray = source.nextArray(Date.class, SourceRuleTest.GENERATE_DATE);
@@ -146,6 +185,41 @@ public class SourceRuleTest {
         Assert.assertNotNull(composedFunctionGenerated);
     }
 
+    @Test
+    public void canGenerateWithoutIntervals() {
+        final int[] flat = source.generateFlat(s -> {
+            s.pushInterval();
+            final int[] ints = s.generate(s2 -> s2.nextIntArray(s3 -> s3.nextInt(0, 10), 1, 10));
+            s.popInterval(ints);
+            return ints;
+        });
+        Assert.assertTrue(1 <= flat.length && flat.length <= 10);
+
+        final List<Integer> leaf = source.generateLeaf(s -> s.nextList(s2 -> s2.generate(IntSource::nextInt), 3));
+        Assert.assertEquals(3, leaf.size());
+
+        Assert.assertEquals("Hello!", source.generateLeaf(GeneratorMapTestClass.class).s);
+    }
+
+    @Test
+    public void canCombineGenerators() {
+        final Generator<Integer> evens = Generator.<Integer>asGenerator(s -> s.nextInt(0, 100)).map(i -> i * 2);
+        final int even = source.generate(evens);
+        Assert.assertEquals(0, even % 2);
+
+        final int odd = source.generate(evens.filter(i -> i < 200).map(i -> i + 1));
+        Assert.assertEquals(1, odd % 2);
+
+        final List<Integer> sized = source.generate(evens.flatMap(size -> s -> s.nextList(IntSource::nextInt, size, size)));
+        Assert.assertEquals(0, sized.size() % 2);
+
+        final String zipped = source.generate(evens.zip(Source::nextBool, (i, b) -> i + ":" + b));
+        Assert.assertTrue(zipped.contains(":"));
+
+        final Date date = source.generate(Generator.oneOf(DATE_GENERATOR, GENERATE_DATE));
+        Assert.assertNotNull(date);
+    }
+
     @Test
     public void canGetAShort() {
         final short aShort = source.nextShort();
@@ -333,6 +407,12 @@ public class SourceRuleTest {
         Assert.assertNotNull(generated);
     }
 
+    @Test
+    public void usesTheOnlyGeneratorForAnInterface() {
+        final CharSequence generated = source.generate(CharSequence.class);
+        Assert.assertTrue(generated instanceof String);
+    }
+
     @Test
     @Seed(1234567)
     @Trials(1)
@@ -340,6 +420,30 @@ public class SourceRuleTest {
         Assert.assertEquals(-1921583219793701470L, source.nextLong());
     }
 
+    @Test
+    @Parallel(threads = 4)
+    public void canRunTrialsInParallel() {
+        final int anInt = source.nextInt(0, 10);
+        Assert.assertTrue(0 <= anInt);
+        Assert.assertTrue(anInt <= 10);
+    }
+
+    @Test
+    @TimeBudget(millis = 60_000, maxTrials = 50)
+    public void canRunWithinATimeBudget() {
+        Assert.assertTrue(BUDGETED_TRIALS.incrementAndGet() <= 50);
+        final List<Integer> ints = source.nextList(IntSource::nextInt);
+        Assert.assertNotNull(ints);
+    }
+
+    @Test
+    @Trials(50)
+    @Listeners(SummaryTableListener.class)
+    public void canReportTrialStatistics() {
+        final List<Integer> ints = source.nextList(IntSource::nextInt);
+        Assert.assertNotNull(ints);
+    }
+
     @Test
     public void reflectiveOverPrimitives() {
         final Long aLong = source.reflectively(Long.class);
@@ -419,6 +523,16 @@ public class SourceRuleTest {
         Assert.assertNotNull(classWithGenerics);
     }
 
+    @Test
+    public void canReflectivelyGenerateNestedGenerics() {
+        final WithNestedGenerics withNestedGenerics = source.reflectively(WithNestedGenerics.class);
+
+        withNestedGenerics.aMap.forEach((key, value) -> {
+            Assert.assertTrue(key instanceof String);
+            value.forEach(element -> Assert.assertEquals("Hello!", element.s));
+        });
+    }
+
     @Test
     public void canReflectivelyGenerateAClassOnlyStaticConstructors() {
         ClassWithStaticConstructor staticy = source.reflectively(ClassWithStaticConstructor.class);
@@ -456,6 +570,16 @@ public class SourceRuleTest {
         }
     }
 
+    public static class WithNestedGenerics
+    {
+        final Map<String, List<GeneratorMapTestClass>> aMap;
+
+        public WithNestedGenerics(Map<String, List<GeneratorMapTestClass>> aMap)
+        {
+            this.aMap = aMap;
+        }
+    }
+
     public static class TrickyGenericsWrapper
     {
         final ClassWithTrickyGenerics<String, Integer, GeneratorMapTestClass> classWithTrickyGenerics;
@@ -0,0 +1,33 @@
+package net.lfn3.undertaker.junit.coverage;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+public class CorpusTest {
+    @Test
+    public void stopsAddingOnceFull() {
+        final Corpus corpus = new Corpus(2);
+        Assert.assertTrue(corpus.add(1, 100.0, true));
+        Assert.assertTrue(corpus.add(2, 50.0, false));
+        Assert.assertFalse(corpus.add(3, 100.0, true));
+        Assert.assertEquals(2, corpus.size());
+    }
+
+    @Test
+    public void onlyPicksInputsThatDrewDefaultSizes() {
+        final SplittableRandom random = new SplittableRandom(0);
+        final Corpus corpus = new Corpus(10);
+        corpus.add(1, 100.0, false);
+        Assert.assertNull(corpus.pick(random));
+
+        corpus.add(2, 25.0, true);
+        corpus.add(3, 100.0, false);
+        for (int i = 0; i < 100; i++) {
+            final Corpus.Input input = corpus.pick(random);
+            Assert.assertEquals(2, input.seed);
+            Assert.assertEquals(25.0, input.percent, 0.0);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package net.lfn3.undertaker.junit.coverage;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CoverageProbesTest {
+    @After
+    public void stopTracing() {
+        CoverageProbes.stopTracing();
+    }
+
+    @Test
+    public void onlyRecordsWhileTracing() {
+        final boolean[] seen = new boolean[CoverageProbes.MAP_SIZE];
+        CoverageProbes.hit(1);
+        Assert.assertEquals(0, CoverageProbes.mergeNewEdges(seen));
+
+        CoverageProbes.startTracing();
+        CoverageProbes.hit(1);
+        CoverageProbes.hit(2);
+        Assert.assertEquals(2, CoverageProbes.mergeNewEdges(seen));
+
+        CoverageProbes.stopTracing();
+        CoverageProbes.hit(3);
+        Assert.assertEquals(0, CoverageProbes.mergeNewEdges(seen));
+    }
+
+    @Test
+    public void onlyCountsEdgesOnce() {
+        final boolean[] seen = new boolean[CoverageProbes.MAP_SIZE];
+        CoverageProbes.startTracing();
+        CoverageProbes.hit(0x1000);
+        CoverageProbes.hit(0x2000);
+        Assert.assertEquals(2, CoverageProbes.mergeNewEdges(seen));
+
+        CoverageProbes.hit(0x1000);
+        CoverageProbes.hit(0x2000);
+        Assert.assertEquals(0, CoverageProbes.mergeNewEdges(seen));
+
+        CoverageProbes.hit(0x2000);
+        CoverageProbes.hit(0x1000);
+        Assert.assertEquals(2, CoverageProbes.mergeNewEdges(seen));
+    }
+
+    @Test
+    public void doesNotSeeOtherThreadsEdges() throws InterruptedException {
+        final boolean[] seen = new boolean[CoverageProbes.MAP_SIZE];
+        CoverageProbes.startTracing();
+
+        final AtomicInteger otherThreadsEdges = new AtomicInteger();
+        final Thread other = new Thread(() -> {
+            CoverageProbes.startTracing();
+            CoverageProbes.hit(1);
+            CoverageProbes.hit(2);
+            otherThreadsEdges.set(CoverageProbes.mergeNewEdges(new boolean[CoverageProbes.MAP_SIZE]));
+            CoverageProbes.stopTracing();
+        });
+        other.start();
+        other.join();
+
+        Assert.assertEquals(2, otherThreadsEdges.get());
+        Assert.assertEquals(0, CoverageProbes.mergeNewEdges(seen));
+    }
+}
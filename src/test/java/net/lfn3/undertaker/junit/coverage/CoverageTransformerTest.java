@@ -0,0 +1,94 @@
+package net.lfn3.undertaker.junit.coverage;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+
+public class CoverageTransformerTest {
+    private static final String BRANCHY = Branchy.class.getName();
+
+    private final CoverageTransformer transformer = new CoverageTransformer(new String[]{"net.lfn3.undertaker.junit.coverage"});
+    private final boolean[] seen = new boolean[CoverageProbes.MAP_SIZE];
+
+    public static class Branchy {
+        public static int classify(int i) {
+            if (i < 0) {
+                return -1;
+            }
+            if (i == 0) {
+                return 0;
+            }
+            return 1;
+        }
+    }
+
+    @Before
+    public void startTracing() {
+        CoverageProbes.startTracing();
+    }
+
+    @After
+    public void stopTracing() {
+        CoverageProbes.stopTracing();
+    }
+
+    @Test
+    public void recordsNewEdgesForNewBranches() throws Exception {
+        final Method classify = instrumented().getMethod("classify", int.class);
+        CoverageProbes.mergeNewEdges(seen);
+
+        Assert.assertEquals(1, classify.invoke(null, 5));
+        Assert.assertTrue(0 < CoverageProbes.mergeNewEdges(seen));
+
+        Assert.assertEquals(1, classify.invoke(null, 7));
+        Assert.assertEquals(0, CoverageProbes.mergeNewEdges(seen));
+
+        Assert.assertEquals(-1, classify.invoke(null, -3));
+        Assert.assertTrue(0 < CoverageProbes.mergeNewEdges(seen));
+
+        Assert.assertEquals(0, classify.invoke(null, 0));
+        Assert.assertTrue(0 < CoverageProbes.mergeNewEdges(seen));
+    }
+
+    @Test
+    public void leavesOtherPackagesAlone() throws IOException {
+        Assert.assertNull(transformer.transform(null, "org/example/Branchy", null, null, bytesOf(Branchy.class)));
+    }
+
+    @Test
+    public void leavesClassesItCannotReadAlone() {
+        Assert.assertNull(transformer.transform(null, BRANCHY.replace('.', '/'), null, null, new byte[]{1, 2, 3}));
+    }
+
+    private Class<?> instrumented() throws IOException, ClassNotFoundException {
+        final byte[] instrumented = transformer.transform(null, BRANCHY.replace('.', '/'), null, null, bytesOf(Branchy.class));
+        Assert.assertNotNull(instrumented);
+        return new ClassLoader(getClass().getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+                if (BRANCHY.equals(name)) {
+                    return defineClass(name, instrumented, 0, instrumented.length);
+                }
+                return super.loadClass(name, resolve);
+            }
+        }.loadClass(BRANCHY);
+    }
+
+    private static byte[] bytesOf(Class<?> c) throws IOException {
+        try (InputStream in = c.getResourceAsStream(c.getName().substring(c.getName().lastIndexOf('.') + 1) + ".class")) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
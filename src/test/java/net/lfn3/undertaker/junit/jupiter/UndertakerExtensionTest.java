@@ -0,0 +1,92 @@
+package net.lfn3.undertaker.junit.jupiter;
+
+import net.lfn3.undertaker.junit.Parallel;
+import net.lfn3.undertaker.junit.Source;
+import net.lfn3.undertaker.junit.Trials;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.extension.ExtensionConfigurationException;
+import org.junit.platform.engine.discovery.DiscoverySelectors;
+import org.junit.platform.launcher.LauncherDiscoveryRequest;
+import org.junit.platform.launcher.core.LauncherDiscoveryRequestBuilder;
+import org.junit.platform.launcher.core.LauncherFactory;
+import org.junit.platform.launcher.listeners.SummaryGeneratingListener;
+import org.junit.platform.launcher.listeners.TestExecutionSummary;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class UndertakerExtensionTest {
+    @Test
+    public void runsPropertiesConcurrently() throws Exception {
+        final TestExecutionSummary summary = run(ConcurrentProperties.class);
+
+        Assert.assertEquals(0, summary.getTotalFailureCount());
+        Assert.assertEquals(2, summary.getTestsSucceededCount());
+        Assert.assertTrue("The properties never ran at the same time", ConcurrentProperties.OVERLAPPED.await(0, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void rejectsParallelTrials() {
+        final TestExecutionSummary summary = run(ParallelProperty.class);
+
+        Assert.assertEquals(1, summary.getTotalFailureCount());
+        Assert.assertTrue(summary.getFailures().get(0).getException() instanceof ExtensionConfigurationException);
+    }
+
+    private static TestExecutionSummary run(Class<?> testClass) {
+        final LauncherDiscoveryRequest request = LauncherDiscoveryRequestBuilder.request()
+                .selectors(DiscoverySelectors.selectClass(testClass))
+                .configurationParameter("junit.jupiter.execution.parallel.enabled", "true")
+                .configurationParameter("junit.jupiter.execution.parallel.mode.default", "concurrent")
+                .configurationParameter("junit.jupiter.execution.parallel.config.strategy", "fixed")
+                .configurationParameter("junit.jupiter.execution.parallel.config.fixed.parallelism", "2")
+                .build();
+        final SummaryGeneratingListener listener = new SummaryGeneratingListener();
+        LauncherFactory.create().execute(request, listener);
+        return listener.getSummary();
+    }
+
+    //Each property waits, on its first trial, for the other to start, so they can only both pass if they overlap.
+    //They draw from different ranges, so values leaking from one to the other would fail the assertions.
+    @ExtendWith(UndertakerExtension.class)
+    public static class ConcurrentProperties {
+        static final CountDownLatch OVERLAPPED = new CountDownLatch(2);
+
+        private boolean started;
+
+        private void waitForTheOther() throws InterruptedException {
+            if (!started) {
+                started = true;
+                OVERLAPPED.countDown();
+                Assert.assertTrue(OVERLAPPED.await(10, TimeUnit.SECONDS));
+            }
+        }
+
+        @org.junit.jupiter.api.Test
+        @Trials(200)
+        public void smallInts(Source source) throws Exception {
+            waitForTheOther();
+            final int anInt = source.nextInt(0, 10);
+            Assert.assertTrue(0 <= anInt && anInt <= 10);
+        }
+
+        @org.junit.jupiter.api.Test
+        @Trials(200)
+        public void bigInts(Source source) throws Exception {
+            waitForTheOther();
+            final int anInt = source.nextInt(1000, 1010);
+            Assert.assertTrue(1000 <= anInt && anInt <= 1010);
+        }
+    }
+
+    @ExtendWith(UndertakerExtension.class)
+    public static class ParallelProperty {
+        @org.junit.jupiter.api.Test
+        @Parallel(threads = 2)
+        public void parallelTrials(Source source) {
+            source.nextInt();
+        }
+    }
+}
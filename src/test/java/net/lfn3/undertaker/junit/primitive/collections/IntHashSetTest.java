@@ -0,0 +1,60 @@
+package net.lfn3.undertaker.junit.primitive.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IntHashSetTest {
+    @Test
+    public void onlyAddsEachValueOnce() {
+        final IntHashSet set = new IntHashSet(4);
+        for (int i = -1000; i < 1000; i++) {
+            Assert.assertTrue(set.add(i * 31));
+        }
+        for (int i = -1000; i < 1000; i++) {
+            Assert.assertFalse(set.add(i * 31));
+            Assert.assertTrue(set.contains(i * 31));
+        }
+        Assert.assertFalse(set.contains(1));
+        Assert.assertEquals(2000, set.size());
+    }
+
+    @Test
+    public void tracksZeroAndMinValue() {
+        final IntHashSet set = new IntHashSet(4);
+        Assert.assertFalse(set.contains(0));
+        Assert.assertTrue(set.add(0));
+        Assert.assertFalse(set.add(0));
+        Assert.assertTrue(set.add(Integer.MIN_VALUE));
+        Assert.assertFalse(set.add(Integer.MIN_VALUE));
+
+        Assert.assertTrue(set.contains(0));
+        Assert.assertTrue(set.contains(Integer.MIN_VALUE));
+        Assert.assertFalse(set.contains(Integer.MAX_VALUE));
+        Assert.assertEquals(2, set.size());
+    }
+
+    @Test
+    public void keepsEverythingWhenItGrows() {
+        final IntHashSet set = new IntHashSet(1);
+        for (int i = 0; i < 10_000; i++) {
+            Assert.assertTrue(set.add(i << 16));
+        }
+        for (int i = 0; i < 10_000; i++) {
+            Assert.assertTrue(set.contains(i << 16));
+        }
+        Assert.assertFalse(set.contains(1));
+        Assert.assertEquals(10_000, set.size());
+    }
+
+    @Test
+    public void canBeCleared() {
+        final IntHashSet set = new IntHashSet(4);
+        set.add(0);
+        set.add(Integer.MIN_VALUE);
+        set.clear();
+
+        Assert.assertEquals(0, set.size());
+        Assert.assertFalse(set.contains(0));
+        Assert.assertFalse(set.contains(Integer.MIN_VALUE));
+    }
+}
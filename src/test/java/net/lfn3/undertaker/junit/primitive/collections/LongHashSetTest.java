@@ -0,0 +1,32 @@
+package net.lfn3.undertaker.junit.primitive.collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LongHashSetTest {
+    @Test
+    public void onlyAddsEachValueOnce() {
+        final LongHashSet set = new LongHashSet(4);
+        for (long i = -1000; i < 1000; i++) {
+            Assert.assertTrue(set.add(i * 31));
+        }
+        for (long i = -1000; i < 1000; i++) {
+            Assert.assertFalse(set.add(i * 31));
+            Assert.assertTrue(set.contains(i * 31));
+        }
+        Assert.assertFalse(set.contains(1));
+        Assert.assertEquals(2000, set.size());
+    }
+
+    @Test
+    public void canBeCleared() {
+        final LongHashSet set = new LongHashSet(4);
+        set.add(0);
+        set.add(Long.MIN_VALUE);
+        set.clear();
+
+        Assert.assertEquals(0, set.size());
+        Assert.assertFalse(set.contains(0));
+        Assert.assertFalse(set.contains(Long.MIN_VALUE));
+    }
+}
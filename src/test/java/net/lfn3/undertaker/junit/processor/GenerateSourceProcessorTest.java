@@ -0,0 +1,155 @@
+package net.lfn3.undertaker.junit.processor;
+
+import net.lfn3.undertaker.junit.Source;
+import net.lfn3.undertaker.junit.SourceRule;
+import net.lfn3.undertaker.junit.Trials;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class GenerateSourceProcessorTest {
+    private static final String ORDER = String.join("\n",
+            "package fixture;",
+            "",
+            "import java.util.List;",
+            "",
+            "@net.lfn3.undertaker.junit.GenerateSource",
+            "public class Order {",
+            "    public final String createdBy = new Throwable().getStackTrace()[1].getClassName();",
+            "    public final long id;",
+            "    public final List<Integer> quantities;",
+            "",
+            "    public Order(long id, List<Integer> quantities) {",
+            "        this.id = id;",
+            "        this.quantities = quantities;",
+            "    }",
+            "}");
+
+    private static final String NAMED = String.join("\n",
+            "package fixture;",
+            "",
+            "import java.util.List;",
+            "",
+            "@net.lfn3.undertaker.junit.GenerateSource",
+            "public class Named {",
+            "    public final String createdBy = new Throwable().getStackTrace()[1].getClassName();",
+            "    public final CharSequence name;",
+            "",
+            "    public <T extends CharSequence> Named(T name, List<T> aliases, T[] more) {",
+            "        this.name = name;",
+            "    }",
+            "}");
+
+    private static final String LOWER_BOUND = String.join("\n",
+            "package fixture;",
+            "",
+            "import java.util.List;",
+            "",
+            "@net.lfn3.undertaker.junit.GenerateSource",
+            "public class Sink {",
+            "    public Sink(List<? super Integer> sink) {",
+            "    }",
+            "}");
+
+    private static Path output;
+    private static URLClassLoader loader;
+
+    @Rule
+    public Source source = new SourceRule();
+
+    @BeforeClass
+    public static void compileOrder() throws IOException {
+        output = Files.createTempDirectory("generate-source");
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Assert.assertTrue(diagnostics.getDiagnostics().toString(), compile("fixture.Order", ORDER, diagnostics));
+        Assert.assertTrue(diagnostics.getDiagnostics().toString(), compile("fixture.Named", NAMED, diagnostics));
+        loader = new URLClassLoader(new URL[]{output.toUri().toURL()},
+                GenerateSourceProcessorTest.class.getClassLoader());
+    }
+
+    @AfterClass
+    public static void deleteOutput() throws IOException {
+        loader.close();
+        try (Stream<Path> paths = Files.walk(output)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    @Trials(20)
+    public void generatesThroughTheGeneratedGenerator() throws Exception {
+        final Class<?> order = loader.loadClass("fixture.Order");
+        final Object generated = source.generate(order);
+
+        Assert.assertEquals("fixture.OrderGenerator", order.getField("createdBy").get(generated));
+        Assert.assertNotNull(order.getField("quantities").get(generated));
+    }
+
+    @Test
+    @Trials(20)
+    public void generatesForConstructorsWithTypeParameters() throws Exception {
+        final Class<?> named = loader.loadClass("fixture.Named");
+        final Object generated = source.generate(named);
+
+        Assert.assertEquals("fixture.NamedGenerator", named.getField("createdBy").get(generated));
+        Assert.assertNotNull(named.getField("name").get(generated));
+    }
+
+    @Test
+    @Trials(1)
+    public void lowerBoundedWildcardsDoNotCompile() {
+        final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Assert.assertFalse(compile("fixture.Sink", LOWER_BOUND, diagnostics));
+
+        final List<Diagnostic<? extends JavaFileObject>> errors = diagnostics.getDiagnostics();
+        Assert.assertEquals(errors.toString(), 1, errors.size());
+        Assert.assertEquals(Diagnostic.Kind.ERROR, errors.get(0).getKind());
+        Assert.assertTrue(errors.get(0).getMessage(null), errors.get(0).getMessage(null).contains("List<? super java.lang.Integer>"));
+    }
+
+    private static boolean compile(String className, String code, DiagnosticCollector<JavaFileObject> diagnostics) {
+        final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull("The tests have to run on a JDK to compile the fixtures", compiler);
+        try (StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, null)) {
+            final JavaFileObject source = new SimpleJavaFileObject(
+                    URI.create("string:///" + className.replace('.', '/') + JavaFileObject.Kind.SOURCE.extension),
+                    JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return code;
+                }
+            };
+            final List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"),
+                                                       "-d", output.toString(),
+                                                       "-s", output.toString());
+            final JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics, options, null,
+                                                                       Collections.singletonList(source));
+            task.setProcessors(Collections.singletonList(new GenerateSourceProcessor()));
+            return task.call();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package net.lfn3.undertaker.junit.reflection;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+public class GenerationPlanTest {
+    static class NotPublic {
+        final int value;
+
+        public NotPublic(int value) {
+            this.value = value;
+        }
+
+        public static NotPublic twice(int value) {
+            return new NotPublic(value * 2);
+        }
+    }
+
+    @Test
+    public void cachesAnInvokerPerCandidate() throws Exception {
+        final GenerationPlan plan = GenerationPlan.forClass(NotPublic.class);
+        final List<Invoker> candidates = plan.usableCandidates(null, Collections.emptyMap());
+        Assert.assertEquals(2, candidates.size());
+
+        for (Invoker candidate : candidates) {
+            Assert.assertSame(candidate, plan.invoker(candidate.executable()));
+            Assert.assertSame(candidate, GenerationPlan.invokerFor(candidate.executable()));
+        }
+    }
+
+    @Test
+    public void canInvokeCandidatesOfClassesThatAreNotPublic() throws Throwable {
+        final GenerationPlan plan = GenerationPlan.forClass(NotPublic.class);
+        final Invoker constructor = plan.invoker(NotPublic.class.getConstructor(int.class));
+        final Invoker twice = plan.invoker(NotPublic.class.getMethod("twice", int.class));
+
+        Assert.assertEquals(3, ((NotPublic) constructor.invoke(null, new Object[]{3})).value);
+        Assert.assertEquals(6, ((NotPublic) twice.invoke(null, new Object[]{3})).value);
+    }
+}